@@ -1,13 +1,18 @@
 package engine;
 
+import engine.collider.ColliderGrid;
+import engine.graphics.DrawGrid;
+import engine.graphics.GameGraphics;
 import engine.objects.*;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
 
 /**
  * The object that handles the main update and draw loops in the game.
  *
  * @author Galen Savidge
- * @version 5/16/2020
+ * @version 6/12/2020
  */
 public class Game {
 
@@ -18,30 +23,118 @@ public class Game {
     private static final ArrayList<GameObject> update_queue = new ArrayList<>();
 
     /**
-     * A list of all objects in the game sorted by {@code layer}. Defines the order in which objects' {@code draw}
-     * methods are called.
+     * The objects in {@link #update_queue} grouped by {@code suspend_tier}, highest tier first. Each bucket is sorted the
+     * same way as {@link #update_queue}. Used to visit only the objects that are not suspended when {@link
+     * #setSuspendTier} has been given a tier above zero.
+     */
+    private static final TreeMap<Integer, ArrayList<GameObject>> update_tiers = new TreeMap<>(
+            Comparator.reverseOrder());
+
+    /**
+     * The objects in the buckets of {@link #update_tiers} at or above {@link #active_tier}, in update order. Rebuilt
+     * only when the suspend tier or the buckets change, so a long pause costs one merge.
+     */
+    private static final ArrayList<GameObject> active_objects = new ArrayList<>();
+    private static int active_tier = -1; // Suspend tier active_objects was built for, or -1 if it must be rebuilt
+
+    /**
+     * A list of the objects in the game without draw bounds sorted by {@code layer}. Defines the order in which
+     * objects' {@code draw} methods are called. Objects with draw bounds are kept in {@link DrawGrid} instead and drawn
+     * in the same order when near the camera.
      */
     private static final ArrayList<GameObject> draw_queue = new ArrayList<>();
 
     /**
-     * A stack of new objects to be added to {@link #update_queue} and {@link #draw_queue} once this step is complete.
+     * Scratch list of the {@link DrawGrid} entries near the camera.
+     */
+    private static final ArrayList<DrawGrid.Entry> on_screen = new ArrayList<>();
+
+    /**
+     * Order of {@link #on_screen}: ascending layer, then the order the objects would have in {@link #draw_queue}.
+     */
+    private static final Comparator<DrawGrid.Entry> on_screen_order = Comparator.comparingInt(
+            (DrawGrid.Entry e) -> e.getObject().getLayer()).thenComparingLong(DrawGrid.Entry::getDrawRank);
+
+    /**
+     * New objects to be added to {@link #update_queue} and {@link #draw_queue} once this step is complete, in the order
+     * they were created.
+     */
+    private static final ArrayList<GameObject> new_objects = new ArrayList<>();
+
+    /**
+     * Scratch list used to sort {@link #new_objects} for each queue.
+     */
+    private static final ArrayList<GameObject> new_objects_sorted = new ArrayList<>();
+
+    /**
+     * Order of {@link #update_queue}: descending priority.
+     */
+    private static final Comparator<GameObject> update_order = (a, b) -> Integer.compare(b.getPriority(),
+            a.getPriority());
+
+    /**
+     * Order of {@link #draw_queue}: ascending layer.
      */
-    private static final Stack<GameObject> new_objects = new Stack<>();
+    private static final Comparator<GameObject> draw_order = Comparator.comparingInt(GameObject::getLayer);
+
+    /**
+     * Order used to split new objects between the buckets of {@link #update_tiers}.
+     */
+    private static final Comparator<GameObject> tier_order = Comparator.comparingInt(GameObject::getSuspendTier);
+
+    /**
+     * Objects deleted during this step, in the order they were deleted.
+     */
+    private static final ArrayList<GameObject> deleted_objects = new ArrayList<>();
+
+    /**
+     * Objects that are in {@link #draw_queue} but have been taken out of {@link #update_queue}.
+     */
+    private static final ArrayList<GameObject> not_updated = new ArrayList<>();
+
+    /**
+     * Objects to move from {@link #update_queue} to {@link #not_updated} once this step is complete.
+     */
+    private static final ArrayList<GameObject> stop_updating = new ArrayList<>();
+
+    /**
+     * Scratch list of objects with the same priority that can be updated in parallel.
+     */
+    private static final ArrayList<PhysicsObject> parallel_batch = new ArrayList<>();
     
     private static boolean running;
     private static int current_suspend_tier = 0;
     private static boolean use_frame_time;
     private static long step_time = 0; // In nanoseconds
     private static int target_fps = 60;
+    private static boolean fixed_timestep = false;
+    private static int max_steps_per_frame = 5;
+    private static int max_render_fps = 0;
+    private static double interpolation_alpha = 1;
+    private static long step_count = 0;
+    private static final long spin_time = 1000000; // Time before a deadline to stop parking and spin, in nanoseconds
+
+    // Deleted objects are left in the queues and skipped until there are enough of them to be worth removing
+    private static int num_tombstones = 0;
+    private static final int min_tombstones = 64;
+
+    private static long num_draw_batches = 0; // Used to rank objects with draw bounds; see addNewObjects
+
+    // Runs of objects that can be updated in parallel and are smaller than this are updated on the game thread
+    private static ParallelUpdater parallel_updater = null;
+    private static final int min_parallel_batch = 16;
 
     public static final int inputmanager_priority = 1000;
     public static final int camera_priority = 100;
     public static final int gamegraphics_layer = Integer.MAX_VALUE;
     public static final int background_layer = Integer.MIN_VALUE;
+    public static final int camera_layer = Integer.MIN_VALUE + 1; // Places the camera before anything else is drawn
 
     /**
      * Sets which objects are suspended. Any objects with {@code suspend_tier} less than {@code tier} will not receive
-     * update events.
+     * update events. Suspended objects are not visited at all during the update pass, so a high tier costs nothing for
+     * the objects it freezes. While any objects are suspended, objects with the same priority and different tiers are
+     * updated in order of descending tier.
      */
     public static void setSuspendTier(int tier) {
         if(tier < 0) {
@@ -69,41 +162,169 @@ public class Game {
     }
 
     /**
-     * Adds an object to the {@link #new_objects} stack.
+     * Sets the game to update at a fixed rate independent of drawing. If set to true, {@link #run} runs as many updates
+     * as are needed to keep pace with real time at the target frame rate set by {@link #setTargetFPS}, and draws once
+     * between batches of updates as often as {@link #setMaxRenderFPS} allows. Step time is always the target frame
+     * time. If set to false, each loop runs one update and one draw. Defaults to {@code false}.
+     *
+     * @see #getInterpolationAlpha
+     */
+    public static void setUseFixedTimestep(boolean fixed_timestep) {
+        Game.fixed_timestep = fixed_timestep;
+    }
+
+    /**
+     * Sets the most updates that can be run between two draws when using a fixed timestep. If the game falls further
+     * behind than this, the extra time is dropped and the game slows down instead of trying to catch up. Defaults to 5.
+     */
+    public static void setMaxStepsPerFrame(int steps) {
+        if(steps >= 1) {
+            max_steps_per_frame = steps;
+        }
+    }
+
+    /**
+     * Limits how often the game draws when using a fixed timestep.
+     *
+     * @param fps Maximum frame rate in frames per second, or 0 to draw as often as possible. Defaults to 0.
+     */
+    public static void setMaxRenderFPS(int fps) {
+        max_render_fps = Math.max(0, fps);
+    }
+
+    /**
+     * Sets whether objects that allow it are updated on several threads at once. When enabled, each run of consecutive
+     * objects in the update queue with the same priority whose {@link PhysicsObject#canUpdateInParallel} returns true
+     * is split into islands of objects near each other, and the islands are updated in parallel. Objects in the same
+     * island are still updated in queue order, but the order between islands is not defined. Has no effect on
+     * machines with a single processor. Defaults to {@code false}.
+     */
+    public static void setParallelUpdates(boolean parallel) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if(parallel && parallel_updater == null && processors > 1) {
+            parallel_updater = new ParallelUpdater(processors);
+        }
+        else if(!parallel && parallel_updater != null) {
+            parallel_updater.shutdown();
+            parallel_updater = null;
+        }
+    }
+
+    /**
+     * Returns how far real time has progressed toward the next update, for use in {@code draw()}. When using a fixed
+     * timestep, objects can draw themselves at {@code previous + (current - previous)*alpha} to move smoothly when
+     * drawing more often than updating.
+     *
+     * @return A value in {@code [0, 1)} when using a fixed timestep; always 1 otherwise.
+     * @see engine.objects.PhysicsObject#interpolatedPosition
+     */
+    public static double getInterpolationAlpha() {
+        return interpolation_alpha;
+    }
+
+    /**
+     * Adds an object to the {@link #new_objects} list.
      * @param object The {@link GameObject} or object of a child class.
      */
     public static void addObject(GameObject object) {
-        new_objects.push(object);
+        synchronized(new_objects) {
+            new_objects.add(object);
+        }
     }
 
     /**
-     * Adds an object at the proper places in {@link #update_queue} and {@link #draw_queue}.
-     * @param object The {@link GameObject} or object of a child class.
+     * Records that {@code object} has been deleted so that it can be removed from the queues at the end of the step.
+     * Called by {@link GameObject#delete}; use that instead.
      */
-    private static void addToQueues(GameObject object) {
-        if(object.isDeleted()) {
+    public static void removeObject(GameObject object) {
+        synchronized(deleted_objects) {
+            deleted_objects.add(object);
+        }
+    }
+
+    /**
+     * Stops calling {@code object.update()} from the end of the current step onward. The object is still drawn and
+     * still receives {@link GameObject#deleteEvent}. Used for objects that have nothing to do each step, such as level
+     * geometry baked into {@link engine.collider.StaticGeometry}.
+     */
+    public static void stopUpdating(GameObject object) {
+        synchronized(stop_updating) {
+            stop_updating.add(object);
+        }
+    }
+
+    /**
+     * Adds every object in {@link #new_objects} at the proper places in {@link #update_queue} and {@link #draw_queue}.
+     * The new objects are sorted once and merged into each queue in a single pass, so adding k objects to a queue of n
+     * costs O(k log k + n) rather than O(k*n). New objects are placed ahead of existing objects with the same priority
+     * or layer, and keep the order they were created in among themselves. Objects with draw bounds go to {@link
+     * DrawGrid} instead of {@link #draw_queue}, ranked so that they are drawn in the same order.
+     */
+    private static void addNewObjects() {
+        new_objects.removeIf(GameObject::isDeleted);
+        if(new_objects.isEmpty()) {
             return;
         }
 
-        // Insert object into the update queue
-        int i = 0;
-        while(i < update_queue.size()) {
-            if(update_queue.get(i).getPriority() <= object.getPriority()) {
-                break;
+        // Each sort starts from creation order so that ties keep it
+        new_objects_sorted.addAll(new_objects);
+        new_objects_sorted.sort(update_order);
+        merge(update_queue, new_objects_sorted, update_order);
+        addToTiers(new_objects_sorted);
+
+        new_objects.sort(draw_order);
+        num_draw_batches++;
+        for(int i = 0;i < new_objects.size();i++) {
+            DrawGrid.Entry entry = new_objects.get(i).getDrawEntry();
+            if(entry != null) {
+                entry.setDrawRank(-(num_draw_batches << 32) + i); // Later batches first, then creation order
+                DrawGrid.add(entry);
             }
-            i++;
         }
-        update_queue.add(i, object);
+        new_objects.removeIf(o -> o.getDrawEntry() != null);
+        merge(draw_queue, new_objects, draw_order);
 
-        // Insert object into the draw queue
-        i = 0;
-        while(i < draw_queue.size()) {
-            if(draw_queue.get(i).getLayer() >= object.getLayer()) {
-                break;
+        new_objects_sorted.clear();
+        new_objects.clear();
+    }
+
+    /**
+     * Merges each object in {@code batch}, which must be sorted by {@link #update_order}, into the bucket of {@link
+     * #update_tiers} matching its {@code suspend_tier}. Reorders {@code batch}.
+     */
+    private static void addToTiers(ArrayList<GameObject> batch) {
+        batch.sort(tier_order); // Stable, so each tier keeps update order
+        int start = 0;
+        for(int i = 1;i <= batch.size();i++) {
+            int tier = batch.get(start).getSuspendTier();
+            if(i == batch.size() || batch.get(i).getSuspendTier() != tier) {
+                merge(update_tiers.computeIfAbsent(tier, t -> new ArrayList<>()), batch.subList(start, i),
+                        update_order);
+                start = i;
+            }
+        }
+        active_tier = -1;
+    }
+
+    /**
+     * Merges {@code batch} into {@code queue} in place. Both lists must already be sorted by {@code order}. Elements
+     * of {@code batch} are placed before elements of {@code queue} that compare equal to them.
+     */
+    private static void merge(ArrayList<GameObject> queue, List<GameObject> batch, Comparator<GameObject> order) {
+        int i = queue.size() - 1; // Last unmerged element of queue
+        int j = batch.size() - 1; // Last unmerged element of batch
+        queue.addAll(batch); // Grow queue to its final size
+        int k = queue.size() - 1;
+
+        // Fill queue from the back so that no element is moved more than once
+        while(j >= 0) {
+            if(i >= 0 && order.compare(queue.get(i), batch.get(j)) >= 0) {
+                queue.set(k--, queue.get(i--));
+            }
+            else {
+                queue.set(k--, batch.get(j--));
             }
-            i++;
         }
-        draw_queue.add(i, object);
     }
 
     /**
@@ -117,16 +338,23 @@ public class Game {
             }
         }
 
-        for(GameObject o : new_objects) {
+        for(GameObject o : not_updated) {
             if(!o.isPersistent()) {
-                new_objects.remove(o);
                 o.delete();
             }
         }
+
+        new_objects.removeIf(o -> {
+            if(!o.isPersistent()) {
+                o.delete();
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
-     * Returns the list iterator for the update queue.
+     * Returns the list iterator for the update queue. The queue may contain deleted objects, which should be skipped.
      */
     public static ListIterator<GameObject> updateQueueIterator() {
         return update_queue.listIterator();
@@ -134,63 +362,276 @@ public class Game {
 
     /**
      * Runs the game loop until {@link #stop()} is called.
+     *
+     * @see #setUseFixedTimestep
      */
     public static void run() {
         running = true;
+        if(fixed_timestep) {
+            runFixedTimestep();
+        }
+        else {
+            runVariableTimestep();
+        }
+    }
+
+    /**
+     * Runs exactly {@code steps} steps, each with one update and one draw, as fast as possible without waiting between
+     * them. Step time is always the target frame time, so the simulation runs the same as it would in real time. Returns
+     * early if {@link #stop()} is called. Intended for running the game headless.
+     *
+     * @see engine.graphics.GameGraphics#initHeadless
+     */
+    public static void runSteps(long steps) {
+        running = true;
+        interpolation_alpha = 1;
+        step_time = (long)(1e9/target_fps);
+        for(long i = 0;i < steps && running;i++) {
+            updateObjects();
+            drawObjects();
+            endStep();
+        }
+        running = false;
+    }
+
+    /**
+     * Runs one update and one draw per loop, then waits out the rest of the target frame time.
+     */
+    private static void runVariableTimestep() {
+        interpolation_alpha = 1;
         while(running) {
             // Record step start time
             long start_time = System.nanoTime();
 
-            // Iterate over update queue
-            ListIterator<GameObject> i = update_queue.listIterator();
-            while(i.hasNext()) {
-                GameObject o = i.next();
-                if(!o.isDeleted() && o.getSuspendTier() >= current_suspend_tier) {
-                    o.update();
+            updateObjects();
+            drawObjects();
+            endStep();
+
+            // Wait to save CPU cycles
+            long target_ns = (long)(1e9/target_fps);
+            waitUntil(start_time + target_ns);
+
+            // Update step time
+            if(use_frame_time) {
+                step_time = target_ns;
+            }
+            else {
+                step_time = System.nanoTime() - start_time;
+            }
+        }
+    }
+
+    /**
+     * Runs updates at exactly the target frame rate using an accumulator of real time, and draws once per loop.
+     */
+    private static void runFixedTimestep() {
+        long step_ns = (long)(1e9/target_fps);
+        step_time = step_ns;
+        long accumulator = step_ns; // Run the first step immediately
+        long previous_time = System.nanoTime();
+        while(running) {
+            long frame_start = System.nanoTime();
+            accumulator += frame_start - previous_time;
+            previous_time = frame_start;
+
+            // Run every step that is due, dropping time that cannot be caught up on
+            int steps = 0;
+            while(accumulator >= step_ns && running) {
+                if(steps == max_steps_per_frame) {
+                    accumulator %= step_ns;
+                    break;
                 }
+                updateObjects();
+                endStep();
+                accumulator -= step_ns;
+                steps++;
+            }
+
+            interpolation_alpha = (double)accumulator/step_ns;
+            drawObjects();
+
+            // Respect the render frame rate cap
+            if(max_render_fps > 0) {
+                waitUntil(frame_start + (long)(1e9/max_render_fps));
             }
-            
-            // Iterate over draw queue
-            i = draw_queue.listIterator();
-            while(i.hasNext()) {
-                GameObject o = i.next();
-                if(!o.isDeleted() && o.visible) {
-                    o.draw();
+        }
+    }
+
+    /**
+     * Calls {@code update()} on every object in {@link #update_queue} that is not suspended, then applies deferred
+     * collider grid updates. Runs of objects that can be updated in parallel are handed to {@link #parallel_updater}
+     * if it is enabled.
+     */
+    private static void updateObjects() {
+        ArrayList<GameObject> queue = activeObjects();
+        int n = queue.size();
+        int i = 0;
+        while(i < n) {
+            GameObject o = queue.get(i);
+            if(parallel_updater == null || !canUpdateInParallel(o)) {
+                updateObject(o);
+                i++;
+                continue;
+            }
+
+            // Collect the run of parallel objects with the same priority
+            int priority = o.getPriority();
+            while(i < n && (o = queue.get(i)).getPriority() == priority && canUpdateInParallel(o)) {
+                parallel_batch.add((PhysicsObject)o);
+                i++;
+            }
+            if(parallel_batch.size() >= min_parallel_batch) {
+                parallel_updater.update(parallel_batch, current_suspend_tier);
+            }
+            else {
+                for(PhysicsObject p : parallel_batch) {
+                    updateObject(p);
                 }
             }
+            parallel_batch.clear();
+        }
+
+        // Apply deferred collider grid updates
+        ColliderGrid.flush();
+        step_count++;
+    }
+
+    private static void updateObject(GameObject o) {
+        if(!o.isDeleted() && o.getSuspendTier() >= current_suspend_tier) {
+            o.update();
+        }
+    }
+
+    private static boolean canUpdateInParallel(GameObject o) {
+        return o instanceof PhysicsObject && ((PhysicsObject)o).canUpdateInParallel();
+    }
+
+    /**
+     * Calls {@code draw()} on every visible object in {@link #draw_queue} and every visible object in {@link DrawGrid}
+     * near the camera, in layer order. On the same layer, objects in {@link #draw_queue} are drawn first.
+     */
+    private static void drawObjects() {
+        int margin = World.getGridSize();
+        DrawGrid.query(GameGraphics.camera_x - margin, GameGraphics.camera_y - margin,
+                GameGraphics.camera_x + GameGraphics.getWindowWidth() + margin,
+                GameGraphics.camera_y + GameGraphics.getWindowHeight() + margin, on_screen);
+        on_screen.sort(on_screen_order);
+
+        int j = 0;
+        for(GameObject o : draw_queue) {
+            while(j < on_screen.size() && on_screen.get(j).getObject().getLayer() < o.getLayer()) {
+                drawObject(on_screen.get(j++).getObject());
+            }
+            drawObject(o);
+        }
+        while(j < on_screen.size()) {
+            drawObject(on_screen.get(j++).getObject());
+        }
+        on_screen.clear();
+    }
 
-            // Remove deleted objects from update and draw queues
-            for(GameObject o : update_queue) {
-                if(o.isDeleted()) {
-                    o.deleteEvent();
+    private static void drawObject(GameObject o) {
+        if(!o.isDeleted() && o.visible) {
+            o.draw();
+        }
+    }
+
+    /**
+     * Handles objects deleted during the step and adds objects created during the step.
+     */
+    private static void endStep() {
+        // Send delete events, looping by index since deleteEvent may delete more objects
+        if(deleted_objects.size() > 0) {
+            for(int i = 0;i < deleted_objects.size();i++) {
+                GameObject o = deleted_objects.get(i);
+                o.deleteEvent();
+                if(o.getDrawEntry() != null) {
+                    DrawGrid.remove(o.getDrawEntry());
                 }
             }
-            update_queue.removeIf(GameObject::isDeleted);
-            draw_queue.removeIf(GameObject::isDeleted);
+            num_tombstones += deleted_objects.size();
+            deleted_objects.clear();
 
-            // Add new objects to the queues from the new object stack
-            while(new_objects.size() > 0) {
-                addToQueues(new_objects.pop());
+            // Remove deleted objects from the queues once they make up a large enough share of all objects. Every
+            // object is in either update_queue or not_updated, while objects with draw bounds are not in draw_queue
+            if(num_tombstones >= Math.max(min_tombstones, (update_queue.size() + not_updated.size())/4)) {
+                update_queue.removeIf(GameObject::isDeleted);
+                removeFromTiers(GameObject::isDeleted);
+                draw_queue.removeIf(GameObject::isDeleted);
+                not_updated.removeIf(GameObject::isDeleted);
+                num_tombstones = 0;
             }
+        }
 
-            // Sleep to save CPU cycles
-            long update_time = System.nanoTime() - start_time;
-            long target_ns = (long) (1e9/target_fps);
-            if(update_time < target_ns) {
-                try {
-                    Thread.sleep((target_ns - update_time) / (long)1e6);
-                } catch (Exception e) {
-                    e.printStackTrace();
+        // Add new objects to the queues
+        addNewObjects();
+
+        // Take objects that no longer need updates out of the update queue
+        if(stop_updating.size() > 0) {
+            HashSet<GameObject> removed = new HashSet<>(stop_updating);
+            stop_updating.clear();
+            update_queue.removeIf(removed::contains);
+            removeFromTiers(removed::contains);
+            for(GameObject o : removed) {
+                if(!o.isDeleted()) {
+                    not_updated.add(o);
                 }
             }
+        }
+    }
 
-            // Update step time
-            if(use_frame_time) {
-                step_time = target_ns;
+    /**
+     * Removes the objects matching {@code filter} from every bucket of {@link #update_tiers}, dropping buckets left
+     * empty.
+     */
+    private static void removeFromTiers(Predicate<GameObject> filter) {
+        Iterator<ArrayList<GameObject>> i = update_tiers.values().iterator();
+        while(i.hasNext()) {
+            ArrayList<GameObject> bucket = i.next();
+            if(bucket.removeIf(filter)) {
+                active_tier = -1;
+                if(bucket.isEmpty()) {
+                    i.remove();
+                }
             }
-            else {
-                step_time = System.nanoTime() - start_time;
+        }
+    }
+
+    /**
+     * @return The objects to visit in the update pass, in update order: {@link #update_queue} if nothing is suspended,
+     * otherwise the buckets of {@link #update_tiers} at or above the current suspend tier.
+     */
+    private static ArrayList<GameObject> activeObjects() {
+        if(update_tiers.isEmpty() || current_suspend_tier <= update_tiers.lastKey()) {
+            return update_queue;
+        }
+
+        SortedMap<Integer, ArrayList<GameObject>> active = update_tiers.headMap(current_suspend_tier, true);
+        if(active.size() == 1) {
+            return active.get(active.firstKey());
+        }
+        if(active_tier != current_suspend_tier) {
+            active_objects.clear();
+            for(ArrayList<GameObject> bucket : active.values()) {
+                active_objects.addAll(bucket);
             }
+            active_objects.sort(update_order); // Stable, so ties keep descending tier order
+            active_tier = current_suspend_tier;
+        }
+        return active_objects;
+    }
+
+    /**
+     * Blocks until {@code System.nanoTime()} reaches {@code deadline}. Parks the thread until shortly before the
+     * deadline, then spins for the remainder, since parking alone can overshoot by a millisecond or more.
+     */
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > spin_time) {
+            LockSupport.parkNanos(remaining - spin_time);
+        }
+        while(System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
         }
     }
 
@@ -201,6 +642,13 @@ public class Game {
         running = false;
     }
 
+    /**
+     * @return The number of updates run since the program started.
+     */
+    public static long getStepCount() {
+        return step_count;
+    }
+
     /**
      * Returns the total time spent in the last step. Returns 0 if a step has not been completed yet.
      * @return Step time in nanoseconds.
@@ -5,12 +5,13 @@ import engine.objects.GameObject;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.Dictionary;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.io.*;
+import java.util.Arrays;
 
 /**
- * Checks for input from the keyboard and stores keybinds.
+ * Checks for input from the keyboard and stores keybinds. Input is read through actions such as {@link #K_JUMP}, each
+ * of which is bound to one key. Key events from the AWT thread are passed to the game thread through a lock-free
+ * queue and applied once per step, so key state does not change during a step and reading it never allocates.
  *
  * @author Galen Savidge
  * @version 5/16/2020
@@ -19,35 +20,67 @@ public class InputManager extends GameObject {
 
     /* Public engine.InputManager variables and methods */
 
-    // Keybinds
-    public static final int K_LEFT = KeyEvent.VK_A;
-    public static final int K_RIGHT = KeyEvent.VK_D;
-    public static final int K_UP = KeyEvent.VK_W;
-    public static final int K_DOWN = KeyEvent.VK_S;
-    public static final int K_JUMP = KeyEvent.VK_J;
-    public static final int K_SPRINT = KeyEvent.VK_K;
+    // Actions; each action's index also defines its bits in recordings
+    public static final int K_LEFT = 0;
+    public static final int K_RIGHT = 1;
+    public static final int K_UP = 2;
+    public static final int K_DOWN = 3;
+    public static final int K_JUMP = 4;
+    public static final int K_SPRINT = 5;
+    private static final int num_actions = 6;
 
     /**
      * Sets up the static engine.InputManager class and adds an object to the update queue. Should be called once when
      * the program starts.
      */
     public static void init() {
-        // Set up key list
-        InputManager.keys.put(InputManager.K_LEFT, new Key());
-        InputManager.keys.put(InputManager.K_RIGHT, new Key());
-        InputManager.keys.put(InputManager.K_UP, new Key());
-        InputManager.keys.put(InputManager.K_DOWN, new Key());
-        InputManager.keys.put(InputManager.K_JUMP, new Key());
-        InputManager.keys.put(InputManager.K_SPRINT, new Key());
-
-        // Set up key listener
-        GameGraphics.getFrame().addKeyListener(InputManager.key_listener);
-        GameGraphics.getCanvas().addKeyListener(InputManager.key_listener);
+        // Default keybinds
+        bind(K_LEFT, KeyEvent.VK_A);
+        bind(K_RIGHT, KeyEvent.VK_D);
+        bind(K_UP, KeyEvent.VK_W);
+        bind(K_DOWN, KeyEvent.VK_S);
+        bind(K_JUMP, KeyEvent.VK_J);
+        bind(K_SPRINT, KeyEvent.VK_K);
+
+        // Set up key listener; there is no keyboard input when headless
+        if(!GameGraphics.isHeadless()) {
+            GameGraphics.getFrame().addKeyListener(InputManager.key_listener);
+            GameGraphics.getCanvas().addKeyListener(InputManager.key_listener);
+        }
 
         // Add an engine.InputManager to the update queue
         new InputManager();
     }
 
+    /**
+     * Binds {@code action} to the key with code {@code key_code}, replacing its previous key. If the action is held
+     * down it is released at the start of the next step. Should be called from the game thread.
+     *
+     * @param action   An action defined in engine.InputManager.
+     * @param key_code A key code as defined in {@link KeyEvent}, e.g. {@link KeyEvent#VK_SPACE}.
+     */
+    public static void bind(int action, int key_code) {
+        if(key_code < 0 || key_code >= key_table_size) {
+            return;
+        }
+        int old_key_code = bindings[action];
+        if(old_key_code >= 0 && key_actions[old_key_code] == action + 1) {
+            key_actions[old_key_code] = 0;
+        }
+        bindings[action] = key_code;
+        key_actions[key_code] = (byte)(action + 1);
+        up_event[action] = true;
+    }
+
+    /**
+     * @param action An action defined in engine.InputManager.
+     * @return The code of the key bound to {@code action}, as defined in {@link KeyEvent}.
+     */
+    public static int getBinding(int action) {
+        return bindings[action];
+    }
+
+
     /* Public functions to check the state of the keys */
 
     /**
@@ -55,7 +88,7 @@ public class InputManager extends GameObject {
      * @return True if the key is currently pressed.
      */
     public static boolean getDown(int key) {
-        return keys.get(key).down;
+        return down[key];
     }
 
     /**
@@ -63,7 +96,7 @@ public class InputManager extends GameObject {
      * @return True if the key was pressed this step.
      */
     public static boolean getPressed(int key) {
-        return keys.get(key).pressed;
+        return pressed[key];
     }
 
     /**
@@ -71,25 +104,265 @@ public class InputManager extends GameObject {
      * @return True if the key was released this step.
      */
     public static boolean getReleased(int key) {
-        return keys.get(key).released;
+        return released[key];
+    }
+
+
+    /* Recording and replay */
+
+    /**
+     * Starts writing the key events received each step to {@code out}, so that the session can later be played back
+     * with {@link #startReplay}. Each step is stored as a bitmask with a down bit and an up bit per key, and runs of
+     * identical steps are stored once with a count, so a typical session takes a few bytes per second of play.
+     * Replays are only exact if the game is run with a fixed step time.
+     *
+     * @param out Stream to write to. Closed by {@link #stopRecording}.
+     */
+    public static void startRecording(OutputStream out) {
+        stopRecording();
+        recording = new DataOutputStream(new BufferedOutputStream(out));
+        record_mask = -1;
+        record_run = 0;
+        try {
+            // Header: number of keys and which keys are already held down
+            int down_mask = 0;
+            for(int i = 0;i < num_actions;i++) {
+                if(down[i]) {
+                    down_mask |= 1 << i;
+                }
+            }
+            recording.writeByte(num_actions);
+            recording.writeShort(down_mask);
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+            recording = null;
+        }
+    }
+
+    /**
+     * Finishes the recording started by {@link #startRecording} and closes its stream. Does nothing if not recording.
+     */
+    public static void stopRecording() {
+        if(recording == null) {
+            return;
+        }
+        try {
+            writeRun();
+            recording.close();
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+        recording = null;
+    }
+
+    /**
+     * Plays back a recording made with {@link #startRecording}. While replaying, keyboard input is ignored and each
+     * step's key events are read from the recording instead. All keys are released when the recording ends.
+     *
+     * @param in          Stream to read the recording from. Read completely and closed before this method returns.
+     * @param stop_at_end True to call {@link Game#stop} when the recording ends.
+     * @return False if the recording could not be read.
+     */
+    public static boolean startReplay(InputStream in, boolean stop_at_end) {
+        replay = null;
+        int down_mask;
+        try(DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if(data.readUnsignedByte() != num_actions) {
+                System.out.println("Recording does not match the current key binds");
+                return false;
+            }
+            down_mask = data.readUnsignedShort();
+
+            // Each run is a mask and a step count
+            int[] runs = new int[64];
+            int num_runs = 0;
+            while(true) {
+                int mask;
+                try {
+                    mask = data.readUnsignedShort();
+                }
+                catch(EOFException e) {
+                    break;
+                }
+                if(num_runs + 2 > runs.length) {
+                    runs = Arrays.copyOf(runs, runs.length*2);
+                }
+                runs[num_runs++] = mask;
+                runs[num_runs++] = data.readUnsignedShort();
+            }
+            replay = Arrays.copyOf(runs, num_runs);
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        replay_index = 0;
+        replay_step = 0;
+        replay_stop_at_end = stop_at_end;
+
+        // Start from the key state at the start of the recording
+        for(int i = 0;i < num_actions;i++) {
+            down[i] = (down_mask & 1 << i) != 0;
+            pressed[i] = false;
+            released[i] = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return True if a recording is being played back.
+     */
+    public static boolean isReplaying() {
+        return replay != null;
     }
 
 
     /* Internal variables and methods */
 
+    // State of each action; only accessed from the game thread
+    private static final boolean[] down_event = new boolean[num_actions];
+    private static final boolean[] up_event = new boolean[num_actions];
+    private static final boolean[] down = new boolean[num_actions]; // True if the key is currently pressed down
+    private static final boolean[] pressed = new boolean[num_actions]; // True if the key was pressed this step
+    private static final boolean[] released = new boolean[num_actions]; // True if the key was released this step
+
+    // Keybinds: the key code bound to each action, and 1 + the action bound to each key code or 0 if none
+    private static final int key_table_size = 0x10000;
+    private static final int[] bindings = {-1, -1, -1, -1, -1, -1};
+    private static final byte[] key_actions = new byte[key_table_size];
+
+    /*
+     * Key events waiting to be applied, written by the AWT thread and read by the game thread. Each event is stored as
+     * (key_code << 1 | 1 if released). Each index is only written by one thread, and the volatile write of event_write
+     * after storing an event publishes that event to the game thread.
+     */
+    private static final int event_queue_size = 256; // Must be a power of 2
+    private static final int[] event_queue = new int[event_queue_size];
+    private static volatile int event_write = 0;
+    private static volatile int event_read = 0;
+
     /**
-     * Internal class to hold the state of a key.
+     * Adds a key event to the event queue. Only called from one thread at a time. Drops the event if the queue is full.
      */
-    private static class Key {
-        boolean down_event;
-        boolean up_event;
+    private static void queueEvent(int key_code, boolean released) {
+        int write = event_write;
+        if(write - event_read == event_queue_size) {
+            return;
+        }
+        event_queue[write & (event_queue_size - 1)] = key_code << 1 | (released ? 1 : 0);
+        event_write = write + 1;
+    }
 
-        boolean down; // True if the key is currently pressed down
-        boolean pressed; // True if the key was pressed this step
-        boolean released; // True if the key was released this step
+    /**
+     * Takes every waiting event off the event queue and sets the event flags of the actions bound to their keys.
+     */
+    private static void readEvents() {
+        int read = event_read;
+        int write = event_write;
+        while(read != write) {
+            int event = event_queue[read & (event_queue_size - 1)];
+            read++;
+            int key_code = event >>> 1;
+            if(key_code < key_table_size && key_actions[key_code] != 0) {
+                int action = key_actions[key_code] - 1;
+                if((event & 1) == 0) {
+                    down_event[action] = true;
+                }
+                else {
+                    up_event[action] = true;
+                }
+            }
+        }
+        event_read = read;
     }
 
-    protected static final Dictionary<Integer, Key> keys = new Hashtable<>();
+    // Recording state; the current run is written when the mask changes
+    private static DataOutputStream recording;
+    private static int record_mask;
+    private static int record_run;
+    private static final int max_run = 0xFFFF;
+
+    // Replay state: pairs of (mask, steps), the current pair and steps played from it
+    private static int[] replay;
+    private static int replay_index;
+    private static int replay_step;
+    private static boolean replay_stop_at_end;
+
+    /**
+     * @return The key events received this step, with bit {@code 2*i} set for a down event and bit {@code 2*i + 1}
+     * for an up event on action {@code i}.
+     */
+    private static int eventMask() {
+        int mask = 0;
+        for(int i = 0;i < num_actions;i++) {
+            if(down_event[i]) {
+                mask |= 1 << 2*i;
+            }
+            if(up_event[i]) {
+                mask |= 1 << 2*i + 1;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Replaces this step's key events with those from the replay.
+     */
+    private static void replayStep() {
+        int mask = 0;
+        if(replay_index < replay.length) {
+            mask = replay[replay_index];
+            replay_step++;
+            if(replay_step == replay[replay_index + 1]) {
+                replay_index += 2;
+                replay_step = 0;
+            }
+        }
+        else {
+            // Release everything at the end of the recording
+            for(int i = 0;i < num_actions;i++) {
+                mask |= 1 << 2*i + 1;
+            }
+            replay = null;
+            if(replay_stop_at_end) {
+                Game.stop();
+            }
+        }
+
+        for(int i = 0;i < num_actions;i++) {
+            down_event[i] = (mask & 1 << 2*i) != 0;
+            up_event[i] = (mask & 1 << 2*i + 1) != 0;
+        }
+    }
+
+    /**
+     * Adds this step's key events to the recording.
+     */
+    private static void recordStep() {
+        int mask = eventMask();
+        if(mask != record_mask || record_run == max_run) {
+            try {
+                writeRun();
+            }
+            catch(IOException e) {
+                e.printStackTrace();
+                recording = null;
+                return;
+            }
+            record_mask = mask;
+        }
+        record_run++;
+    }
+
+    private static void writeRun() throws IOException {
+        if(record_run > 0) {
+            recording.writeShort(record_mask);
+            recording.writeShort(record_run);
+        }
+        record_run = 0;
+    }
 
     protected static final KeyListener key_listener = new KeyListener() {
         @Override
@@ -99,18 +372,12 @@ public class InputManager extends GameObject {
 
         @Override
         public void keyPressed(KeyEvent e) {
-            Key k = keys.get(e.getKeyCode());
-            if(k != null) {
-                k.down_event = true;
-            }
+            queueEvent(e.getKeyCode(), false);
         }
 
         @Override
         public void keyReleased(KeyEvent e) {
-            Key k = keys.get(e.getKeyCode());
-            if(k != null) {
-                k.up_event = true;
-            }
+            queueEvent(e.getKeyCode(), true);
         }
     };
 
@@ -129,25 +396,30 @@ public class InputManager extends GameObject {
 
     @Override
     public void update() {
-        Enumeration<Key> e = keys.elements();
-        while(e.hasMoreElements()) {
-            Key k = e.nextElement();
+        readEvents();
+        if(replay != null) {
+            replayStep();
+        }
+        if(recording != null) {
+            recordStep();
+        }
 
+        for(int i = 0;i < num_actions;i++) {
             // Record key state
-            k.pressed = false;
-            k.released = false;
-            if(k.down_event && !k.down) {
-                k.down = true;
-                k.pressed = true;
+            pressed[i] = false;
+            released[i] = false;
+            if(down_event[i] && !down[i]) {
+                down[i] = true;
+                pressed[i] = true;
             }
-            if(k.up_event && k.down) {
-                k.down = false;
-                k.released = true;
+            if(up_event[i] && down[i]) {
+                down[i] = false;
+                released[i] = true;
             }
 
             // Reset event flags
-            k.down_event = false;
-            k.up_event = false;
+            down_event[i] = false;
+            up_event[i] = false;
         }
     }
 
@@ -0,0 +1,305 @@
+package engine;
+
+import engine.util.Vector2;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles Tiled maps into binary level files that {@link LevelParser} can load without parsing any JSON or XML. A
+ * compiled level holds the map's tile data, the args list of every object with its template already applied, and the
+ * objects' collider vertices, so only images are left to decode when it is loaded. Compiled files are loaded by passing
+ * a file name ending in {@value #file_extension} to {@link LevelParser}.
+ * <p>
+ * Objects are stored by the square region of the level containing their position, with the offset of each region in
+ * an index, so that {@link LevelStreamer} can read the objects of one region at a time from the mapped file. Objects
+ * with no position or with the property "globally loaded" are stored apart from the regions. The tile data of each
+ * layer is read straight from the mapped file as it is drawn.
+ * <p>
+ * Positions in a compiled level are in world coordinates, so it can only be loaded with the same {@link
+ * World#grid_scaling_factor} it was compiled with.
+ * <p>
+ * Usage: {@code LevelCompiler <directory> <map.json> <output.lvl> [grid scaling factor] [region size]}
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class LevelCompiler {
+
+    public static final String file_extension = ".lvl";
+
+    static final int magic = 0x4D4C564C; // "MLVL"
+    static final int version = 2;
+    public static final int default_region_size = 16; // Region width and height in world grid squares
+
+    // Layer kinds
+    static final byte object_layer = 0;
+    static final byte tile_layer = 1;
+    static final byte image_layer = 2;
+
+    // Value tags
+    static final byte null_value = 0;
+    static final byte boolean_value = 1;
+    static final byte long_value = 2;
+    static final byte double_value = 3;
+    static final byte string_value = 4;
+    static final byte vector_value = 5;
+    static final byte vector_array_value = 6;
+    static final byte list_value = 7;
+    static final byte map_value = 8;
+
+    public static void main(String[] args) {
+        if(args.length < 3) {
+            System.out.println("Usage: LevelCompiler <directory> <map.json> <output" + file_extension
+                    + "> [grid scaling factor] [region size]");
+            return;
+        }
+        if(args.length >= 4) {
+            World.grid_scaling_factor = Integer.parseInt(args[3]);
+        }
+        int region_size = args.length >= 5 ? Integer.parseInt(args[4]) : default_region_size;
+
+        try {
+            compile(args[0], args[1], args[2], region_size);
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Compiles a JSON map file exported from Tiled using the current {@link World#grid_scaling_factor} and {@value
+     * #default_region_size} grid square regions.
+     *
+     * @see #compile(String, String, String, int)
+     */
+    public static void compile(String directory, String map_file, String output_file) throws IOException {
+        compile(directory, map_file, output_file, default_region_size);
+    }
+
+    /**
+     * Compiles a JSON map file exported from Tiled using the current {@link World#grid_scaling_factor}.
+     *
+     * @param directory   The path to the folder containing the map. The compiled file is written to the same folder,
+     *                    since file names in the map are relative to it.
+     * @param map_file    The name of the JSON file.
+     * @param output_file The name of the compiled file, which should end in {@value #file_extension}.
+     * @param region_size The width and height in world grid squares of the regions objects are stored by. Levels are
+     *                    streamed in regions of this size.
+     */
+    public static void compile(String directory, String map_file, String output_file, int region_size)
+            throws IOException {
+        LevelParser.Level level = LevelParser.load(directory, map_file, false);
+        if(level == null) {
+            throw new IOException("Could not load " + directory + map_file);
+        }
+        write(level, new File(directory + output_file), region_size);
+    }
+
+    /**
+     * Writes a parsed level to {@code file}. The object layers of {@code level} must be finished. Used by {@link
+     * #compile} and by {@link LevelParser} to stream levels loaded from JSON.
+     *
+     * @param region_size The width and height in world grid squares of the regions objects are stored by.
+     */
+    static void write(LevelParser.Level level, File file, int region_size) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            // Header
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(World.grid_scaling_factor);
+            out.writeInt(level.tile_width);
+            out.writeInt(level.width);
+            out.writeInt(level.height);
+            out.writeInt(region_size);
+
+            // Tile sets
+            out.writeInt(level.tile_set_sources.size());
+            for(int i = 0;i < level.tile_set_sources.size();i++) {
+                writeString(out, level.tile_set_sources.get(i));
+                out.writeInt(level.tile_set_first_gids.get(i));
+            }
+
+            // Layers; the objects of object layers are written by region afterwards
+            ArrayList<HashMap<String, Object>> objects = new ArrayList<>();
+            out.writeInt(level.layers.size());
+            for(LevelParser.LayerData layer : level.layers) {
+                if(layer instanceof LevelParser.ObjectLayer) {
+                    LevelParser.ObjectLayer group = (LevelParser.ObjectLayer)layer;
+                    out.writeByte(object_layer);
+                    out.writeInt(group.objects.size());
+                    objects.addAll(group.objects);
+                }
+                else if(layer instanceof LevelParser.TileLayerData) {
+                    LevelParser.TileLayerData tiles = (LevelParser.TileLayerData)layer;
+                    out.writeByte(tile_layer);
+                    out.writeDouble(tiles.x);
+                    out.writeDouble(tiles.y);
+                    out.writeInt(tiles.layer);
+                    out.writeDouble(tiles.parallax);
+                    out.writeInt(tiles.gids.limit());
+                    for(int i = 0;i < tiles.gids.limit();i++) {
+                        out.writeInt(tiles.gids.get(i));
+                    }
+                }
+                else if(layer instanceof LevelParser.ImageLayerData) {
+                    LevelParser.ImageLayerData image = (LevelParser.ImageLayerData)layer;
+                    out.writeByte(image_layer);
+                    out.writeDouble(image.x);
+                    out.writeDouble(image.y);
+                    out.writeInt(image.layer);
+                    out.writeInt(image.scale);
+                    out.writeDouble(image.parallax);
+                    out.writeBoolean(image.tile);
+                    writeString(out, image.image);
+                }
+            }
+
+            writeRegions(out, level, objects, region_size);
+        }
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Writes the region index followed by the objects of each block: first the objects created with the level, then
+     * the objects of each region. Objects are numbered in map order and stay in map order within their block.
+     */
+    private static void writeRegions(DataOutputStream out, LevelParser.Level level,
+                                     ArrayList<HashMap<String, Object>> objects, int region_size) throws IOException {
+        int regions_x = level.width/region_size + 1, regions_y = level.height/region_size + 1;
+        double region_pixels = region_size*level.tile_width*World.grid_scaling_factor;
+
+        // Sort objects by block, keeping map order within each block
+        long[] keys = new long[objects.size()];
+        for(int i = 0;i < keys.length;i++) {
+            HashMap<String, Object> args = objects.get(i);
+            Object position = args.get("position");
+            int block = 0;
+            if(position instanceof Vector2 && !Boolean.TRUE.equals(args.get("globally loaded"))) {
+                int x = (int)Math.min(Math.max(0, Math.floor(((Vector2)position).x/region_pixels)), regions_x - 1);
+                int y = (int)Math.min(Math.max(0, Math.floor(((Vector2)position).y/region_pixels)), regions_y - 1);
+                block = 1 + x*regions_y + y;
+            }
+            keys[i] = (long)block << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        int num_blocks = 1 + regions_x*regions_y;
+        int[] offsets = new int[num_blocks + 1];
+        ByteArrayOutputStream block_bytes = new ByteArrayOutputStream();
+        DataOutputStream blocks = new DataOutputStream(block_bytes);
+        ByteArrayOutputStream record_bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(record_bytes);
+        int k = 0;
+        for(int block = 0;block < num_blocks;block++) {
+            offsets[block] = blocks.size();
+            int end = k;
+            while(end < keys.length && (int)(keys[end] >>> 32) == block) {
+                end++;
+            }
+            blocks.writeInt(end - k);
+
+            // Each object starts with its length, index, and type so that readers can skip it without parsing it
+            for(;k < end;k++) {
+                int index = (int)keys[k];
+                HashMap<String, Object> args = objects.get(index);
+                record_bytes.reset();
+                record.writeInt(index);
+                Object type = args.get("type");
+                writeString(record, type == null ? "" : type.toString());
+                writeMap(record, args);
+                blocks.writeInt(record_bytes.size());
+                record_bytes.writeTo(blocks);
+            }
+        }
+        offsets[num_blocks] = blocks.size();
+
+        out.writeInt(regions_x);
+        out.writeInt(regions_y);
+        for(int offset : offsets) {
+            out.writeInt(offset);
+        }
+        blocks.flush();
+        block_bytes.writeTo(out);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        out.writeInt(map.size());
+        for(Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(out, entry.getKey().toString());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Writes one value of an object's args list. Supports the value types produced by {@link LevelParser}.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if(value == null) {
+            out.writeByte(null_value);
+        }
+        else if(value instanceof Boolean) {
+            out.writeByte(boolean_value);
+            out.writeBoolean((Boolean)value);
+        }
+        else if(value instanceof Long || value instanceof Integer) {
+            out.writeByte(long_value);
+            out.writeLong(((Number)value).longValue());
+        }
+        else if(value instanceof Double || value instanceof Float) {
+            out.writeByte(double_value);
+            out.writeDouble(((Number)value).doubleValue());
+        }
+        else if(value instanceof String) {
+            out.writeByte(string_value);
+            writeString(out, (String)value);
+        }
+        else if(value instanceof Vector2) {
+            out.writeByte(vector_value);
+            out.writeDouble(((Vector2)value).x);
+            out.writeDouble(((Vector2)value).y);
+        }
+        else if(value instanceof Vector2[]) {
+            Vector2[] vertices = (Vector2[])value;
+            out.writeByte(vector_array_value);
+            out.writeInt(vertices.length);
+            for(Vector2 vertex : vertices) {
+                out.writeDouble(vertex.x);
+                out.writeDouble(vertex.y);
+            }
+        }
+        else if(value instanceof List) {
+            List<?> list = (List<?>)value;
+            out.writeByte(list_value);
+            out.writeInt(list.size());
+            for(Object element : list) {
+                writeValue(out, element);
+            }
+        }
+        else if(value instanceof Map) {
+            out.writeByte(map_value);
+            writeMap(out, (Map<?, ?>)value);
+        }
+        else {
+            throw new IOException("Cannot compile a value of type " + value.getClass().getName());
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package engine;
 
 import engine.collider.ColliderGrid;
+import engine.collider.StaticGeometry;
+import engine.graphics.DrawGrid;
+import engine.graphics.GameGraphics;
 import engine.graphics.ImageLayer;
 import engine.graphics.TileLayer;
 import engine.objects.PhysicsObject;
+import engine.util.FileCache;
 import engine.util.Vector2;
 import engine.graphics.TileLayer.TileSet;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -21,15 +24,33 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.awt.Image;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
- * Loads JSON and XML files generated by Tiled.
+ * Loads JSON and XML files generated by Tiled, and levels compiled from them by {@link LevelCompiler}. Maps are parsed
+ * into a {@link Level}, either on the calling thread or in the background, and then activated on the game thread to
+ * create their objects. Levels loaded while {@link LevelStreamer} is enabled keep their objects in a compiled file,
+ * which is written to a temporary file for JSON maps, and read them one region at a time as the camera moves.
  *
  * @author Galen Savidge
- * @version 5/13/2020
+ * @version 6/12/2020
  */
 public class LevelParser {
 
@@ -48,6 +69,330 @@ public class LevelParser {
     }
 
 
+    /**
+     * A Tiled map that has been read and parsed, with its tile sets and images already decoded, but with no objects
+     * created yet. Returned by {@link #load} and {@link #loadAsync}.
+     */
+    public static class Level {
+        final String directory; // Folder containing the map, which file names in the map are relative to
+        final int tile_width; // Width of a tile in map pixels
+        final int width, height; // Size of the map in tiles
+        final ArrayList<String> tile_set_sources = new ArrayList<>(); // Tile set file names
+        final ArrayList<Integer> tile_set_first_gids = new ArrayList<>(); // First gid of each tile set
+        final ArrayList<TileSet> tile_sets = new ArrayList<>(); // Filled by decode
+        final ArrayList<LayerData> layers = new ArrayList<>(); // In the order they appear in the map
+        RegionData regions = null; // Objects of a streamed level, which are not in its object layers; null otherwise
+
+        Level(String directory, int tile_width, int width, int height) {
+            this.directory = directory;
+            this.tile_width = tile_width;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Sets up the world and creates the tile layers, image layers, and objects in this level. Must be called on the
+         * game thread, and only once per level.
+         *
+         * @param constructors A map of object names to object constructor lambda functions. See {@link
+         *                     #loadFromJson}.
+         */
+        public void activate(HashMap<String, TypeMap> constructors) {
+            // Set up world
+            World.grid_size = tile_width*World.grid_scaling_factor;
+            World.width = width*World.grid_size;
+            World.height = height*World.grid_size;
+            World.active_width = regions != null ? LevelStreamer.residentWidth(regions.region_size) : 0;
+            World.active_height = regions != null ? LevelStreamer.residentHeight(regions.region_size) : 0;
+
+            // Need to do this between when the grid size is determined and when objects are instantiated
+            ColliderGrid.init();
+            DrawGrid.init();
+
+            // List of all PhysicsObjects instantiated
+            ArrayList<PhysicsObject> instances = new ArrayList<>();
+            for(LayerData layer : layers) {
+                layer.spawn(this, constructors, instances);
+            }
+            if(regions != null) {
+                // Objects are created region by region once the camera is placed by the objects created up front
+                LevelStreamer streamer = new LevelStreamer(regions, constructors, instances);
+                LevelStreamer.finishLoading(instances);
+                streamer.stream(Integer.MAX_VALUE);
+            }
+            else {
+                LevelStreamer.finishLoading(instances);
+            }
+        }
+
+        /**
+         * Decodes the tile sets and the images of image layers in parallel, and waits for any objects still being
+         * parsed. Returns once the level is ready to activate.
+         */
+        void decode() {
+            ArrayList<Future<TileSet>> tile_set_tasks = new ArrayList<>();
+            for(int i = 0;i < tile_set_sources.size();i++) {
+                String source = tile_set_sources.get(i);
+                int first_gid = tile_set_first_gids.get(i);
+                tile_set_tasks.add(decoders.submit(() -> getTileSet(directory, source, first_gid)));
+            }
+
+            // Images are cached by GameGraphics, so image layers find them already decoded
+            ArrayList<Future<Image>> image_tasks = new ArrayList<>();
+            for(LayerData layer : layers) {
+                if(layer instanceof ImageLayerData) {
+                    String image_file = directory + ((ImageLayerData)layer).image;
+                    image_tasks.add(decoders.submit(() -> GameGraphics.getImage(image_file)));
+                }
+            }
+
+            for(LayerData layer : layers) {
+                if(layer instanceof ObjectLayer) {
+                    ((ObjectLayer)layer).finish();
+                }
+            }
+            for(Future<Image> task : image_tasks) {
+                await(task);
+            }
+            for(Future<TileSet> task : tile_set_tasks) {
+                TileSet tile_set = await(task);
+                if(tile_set != null) {
+                    tile_sets.add(tile_set);
+                }
+            }
+        }
+    }
+
+    /**
+     * One layer of a parsed map. Creates the layer's objects on the game thread when its {@link Level} is activated.
+     */
+    interface LayerData {
+        void spawn(Level level, HashMap<String, TypeMap> constructors, ArrayList<PhysicsObject> instances);
+    }
+
+    /**
+     * An object group. Objects are created with the lambda functions in {@code constructors}. Empty for streamed
+     * levels, whose objects are in {@link Level#regions}.
+     */
+    static class ObjectLayer implements LayerData {
+        final ArrayList<HashMap<String, Object>> objects = new ArrayList<>(); // Args lists in map order
+        private ArrayList<Future<HashMap<String, Object>>> tasks; // Args lists still being parsed, or null
+
+        ObjectLayer(ArrayList<Future<HashMap<String, Object>>> tasks) {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Waits for the args lists being parsed and adds them to {@link #objects}.
+         */
+        void finish() {
+            if(tasks == null) {
+                return;
+            }
+            for(Future<HashMap<String, Object>> task : tasks) {
+                HashMap<String, Object> args = await(task);
+                if(args != null) {
+                    objects.add(args);
+                }
+            }
+            tasks = null;
+        }
+
+        @Override
+        public void spawn(Level level, HashMap<String, TypeMap> constructors, ArrayList<PhysicsObject> instances) {
+            finish();
+            for(HashMap<String, Object> args : objects) {
+                // Make instance
+                String instance_type = (String)args.get("type");
+                TypeMap constructor = constructors.get(instance_type);
+                if(constructor != null) {
+                    instances.add(constructor.spawn(args));
+                }
+            }
+        }
+    }
+
+    /**
+     * A tile layer. See {@link TileLayer}.
+     */
+    static class TileLayerData implements LayerData {
+        final double x, y, parallax;
+        final int layer;
+        final IntBuffer gids; // Indexed from 0 to its limit
+
+        TileLayerData(double x, double y, int layer, double parallax, IntBuffer gids) {
+            this.x = x;
+            this.y = y;
+            this.layer = layer;
+            this.parallax = parallax;
+            this.gids = gids;
+        }
+
+        @Override
+        public void spawn(Level level, HashMap<String, TypeMap> constructors, ArrayList<PhysicsObject> instances) {
+            new TileLayer(x, y, layer, parallax, level.tile_sets, gids);
+        }
+    }
+
+    /**
+     * An image layer. See {@link ImageLayer}.
+     */
+    static class ImageLayerData implements LayerData {
+        final double x, y, parallax;
+        final int layer, scale;
+        final boolean tile;
+        final String image; // File name relative to the level's directory
+
+        ImageLayerData(double x, double y, int layer, int scale, double parallax, boolean tile, String image) {
+            this.x = x;
+            this.y = y;
+            this.layer = layer;
+            this.scale = scale;
+            this.parallax = parallax;
+            this.tile = tile;
+            this.image = image;
+        }
+
+        @Override
+        public void spawn(Level level, HashMap<String, TypeMap> constructors, ArrayList<PhysicsObject> instances) {
+            new ImageLayer(x, y, layer, scale, parallax, tile, level.directory + image);
+        }
+    }
+
+    /**
+     * The objects of a streamed level, left in its memory-mapped compiled file. The objects of a region are read on the
+     * loader thread shortly before {@link LevelStreamer} needs them and are dropped once it has created them, so only
+     * the objects near the camera are in memory. See {@link LevelCompiler} for the file format.
+     */
+    static class RegionData {
+        final int region_size; // Region width and height in world grid squares
+        final int regions_x, regions_y; // Size of the level in regions
+        final ArrayList<HashMap<String, Object>> always = new ArrayList<>(); // Objects created up front, in map order
+        private final ByteBuffer buffer; // Region index followed by the blocks of objects; duplicated by each reader
+        private final int blocks_start; // Position of the first block in buffer
+
+        RegionData(ByteBuffer buffer, int region_size, int regions_x, int regions_y) {
+            this.buffer = buffer;
+            this.region_size = region_size;
+            this.regions_x = regions_x;
+            this.regions_y = regions_y;
+            this.blocks_start = (regions_x*regions_y + 2)*Integer.BYTES;
+        }
+
+        /**
+         * @param region The index of a region, {@code x*regions_y + y}.
+         * @return The number of objects in {@code region}, read without reading the objects.
+         */
+        int count(int region) {
+            return buffer.getInt(blockStart(region + 1));
+        }
+
+        /**
+         * Starts reading the objects in {@code region} on the loader thread. Objects of types kept loaded by {@link
+         * LevelStreamer} are in {@link #always}, and are {@code null} in the result.
+         *
+         * @param region The index of a region, {@code x*regions_y + y}.
+         * @return The task reading the args list of each object in the region, in map order.
+         */
+        Future<ArrayList<HashMap<String, Object>>> readAsync(int region) {
+            return loader.submit(() -> readBlock(region + 1, false, true, null));
+        }
+
+        /**
+         * Fills {@link #always} with the objects that have no region and the objects in any region that are of types
+         * kept loaded by {@link LevelStreamer}. Only the type of the other objects is read.
+         */
+        void readAlways() throws IOException {
+            TreeMap<Integer, HashMap<String, Object>> objects = new TreeMap<>();
+            ArrayList<Integer> indices = new ArrayList<>();
+            for(int block = 0;block < regions_x*regions_y + 1;block++) {
+                indices.clear();
+                ArrayList<HashMap<String, Object>> block_objects = readBlock(block, true, block == 0, indices);
+                for(int i = 0;i < block_objects.size();i++) {
+                    if(block_objects.get(i) != null) {
+                        objects.put(indices.get(i), block_objects.get(i));
+                    }
+                }
+            }
+            always.addAll(objects.values());
+        }
+
+        /**
+         * Reads every object in the level.
+         *
+         * @param num_objects The number of objects in the level.
+         * @return The args list of each object in map order.
+         */
+        ArrayList<HashMap<String, Object>> readAll(int num_objects) throws IOException {
+            ArrayList<HashMap<String, Object>> objects = new ArrayList<>(Collections.nCopies(num_objects, null));
+            ArrayList<Integer> indices = new ArrayList<>();
+            for(int block = 0;block < regions_x*regions_y + 1;block++) {
+                indices.clear();
+                ArrayList<HashMap<String, Object>> block_objects = readBlock(block, true, true, indices);
+                for(int i = 0;i < block_objects.size();i++) {
+                    objects.set(indices.get(i), block_objects.get(i));
+                }
+            }
+            return objects;
+        }
+
+        private int blockStart(int block) {
+            return blocks_start + buffer.getInt(block*Integer.BYTES);
+        }
+
+        /**
+         * Reads the objects in one block of the file. Block 0 holds the objects with no region, and block {@code k + 1}
+         * holds region {@code k}.
+         *
+         * @param kept    Whether to read objects of types kept loaded by {@link LevelStreamer}.
+         * @param others  Whether to read the other objects.
+         * @param indices If not {@code null}, the map order index of each object is added to this list.
+         * @return The args list of each object in the block, or {@code null} for objects not read.
+         */
+        private ArrayList<HashMap<String, Object>> readBlock(int block, boolean kept, boolean others,
+                                                            ArrayList<Integer> indices) throws IOException {
+            ByteBuffer reader = buffer.duplicate();
+            reader.position(blockStart(block));
+            int count = reader.getInt();
+            ArrayList<HashMap<String, Object>> objects = new ArrayList<>(count);
+            for(int i = 0;i < count;i++) {
+                int length = reader.getInt();
+                int end = reader.position() + length;
+                int index = reader.getInt();
+                if(indices != null) {
+                    indices.add(index);
+                }
+                if(LevelStreamer.isKeptType(readString(reader)) ? kept : others) {
+                    HashMap<String, Object> args = new HashMap<>();
+                    readMap(reader, args);
+                    objects.add(args);
+                }
+                else {
+                    objects.add(null);
+                }
+                reader.position(end);
+            }
+            return objects;
+        }
+    }
+
+    // Parses whole maps for loadAsync, one at a time
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Level loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Decodes the tile sets, templates, and images of the map being parsed
+    private static final ForkJoinPool decoders = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Parsed templates and decoded tile sets, kept between level loads; checked for changes once per load
+    private static final int max_cached_templates = 64;
+    private static final int max_cached_tile_sets = 16;
+    private static final FileCache<HashMap<String, Object>> template_cache = new FileCache<>(max_cached_templates);
+    private static final FileCache<TileSet> tile_set_cache = new FileCache<>(max_cached_tile_sets);
+
+
     /**
      * Loads the tiles, objects, and images from a JSON map file exported from Tiled.
      *
@@ -58,25 +403,62 @@ public class LevelParser {
      *                     should be lower case.
      */
     public static void loadFromJson(String directory, String file_name, HashMap<String, TypeMap> constructors) {
-        JSONParser parser = new JSONParser();
-        String file_text = getFileText(directory + file_name);
+        Level level = load(directory, file_name);
+        if(level != null) {
+            level.activate(constructors);
+        }
+    }
 
-        try {
-            JSONObject main = (JSONObject)parser.parse(file_text); // Top level node
+    /**
+     * Starts parsing a JSON map file exported from Tiled on a background thread, so that the game can keep running
+     * while the level loads. Pass the result to {@link #await}, then call {@link Level#activate} on the game thread.
+     *
+     * @param directory The path to the folder containing the file.
+     * @param file_name The name of the JSON file.
+     */
+    public static Future<Level> loadAsync(String directory, String file_name) {
+        return loader.submit(() -> load(directory, file_name));
+    }
 
-            // Set up world
-            World.grid_size = (int)(long)main.get("tilewidth")*World.grid_scaling_factor;
-            World.width = (int)(long)main.get("width")*World.grid_size;
-            World.height = (int)(long)main.get("height")*World.grid_size;
+    /**
+     * Reads and parses a map without creating any objects. Tile sets, object templates, and images are decoded in
+     * parallel. May be called from any thread.
+     *
+     * @param directory The path to the folder containing the file.
+     * @param file_name The name of a JSON file exported from Tiled, or of a file ending in {@value
+     *                  LevelCompiler#file_extension} created by {@link LevelCompiler}.
+     * @return The parsed level, or {@code null} if the file could not be read or parsed.
+     */
+    public static Level load(String directory, String file_name) {
+        return load(directory, file_name, LevelStreamer.isEnabled());
+    }
 
-            // Need to do this between when the grid size is determined and when objects are instantiated
-            ColliderGrid.init();
+    /**
+     * Reads and parses a map without creating any objects.
+     *
+     * @param streamed If true, the level's objects are left in its compiled file to be read region by region by {@link
+     *                 LevelStreamer}. JSON maps are compiled to a temporary file first.
+     * @see #load(String, String)
+     */
+    static Level load(String directory, String file_name, boolean streamed) {
+        template_cache.revalidate();
+        tile_set_cache.revalidate();
 
-            // List of all PhysicsObjects instantiated
-            ArrayList<PhysicsObject> instances = new ArrayList<>();
+        if(file_name.endsWith(LevelCompiler.file_extension)) {
+            return loadCompiled(directory, Paths.get(directory + file_name), streamed);
+        }
+
+        try(Reader reader = Files.newBufferedReader(Paths.get(directory + file_name), StandardCharsets.UTF_8)) {
+            JSONObject main = TiledMapReader.read(reader); // Top level node
+            Level level = new Level(directory, (int)(long)main.get("tilewidth"), (int)(long)main.get("width"),
+                    (int)(long)main.get("height"));
 
             // Parse tile sets
-            ArrayList<TileSet> tile_sets = parseTilesets(main, directory);
+            JSONArray ts = (JSONArray)main.get("tilesets");
+            for(Object t : ts) {
+                level.tile_set_sources.add((String)((JSONObject)t).get("source"));
+                level.tile_set_first_gids.add((int)(long)((JSONObject)t).get("firstgid"));
+            }
 
             // Parse layers
             JSONArray layers = (JSONArray)main.get("layers");
@@ -100,22 +482,233 @@ public class LevelParser {
                 // Parse object group
                 if(layer_type.equals("objectgroup")) {
                     JSONArray objects = (JSONArray)layer.get("objects");
-                    instances.addAll(parseObjects(directory, x, y, objects, constructors));
+                    level.layers.add(new ObjectLayer(parseObjects(directory, x, y, objects)));
                 }
 
                 // Parse tile/image layers
                 if(layer_type.equals("tilelayer") || layer_type.equals("imagelayer")) {
-                    parseImageLayer(directory, x, y, layer, tile_sets);
+                    LayerData layer_data = parseImageLayer(x, y, layer);
+                    if(layer_data != null) {
+                        level.layers.add(layer_data);
+                    }
                 }
             }
 
-            // Call world loaded events
-            for(PhysicsObject instance : instances) {
-                instance.worldLoadedEvent();
+            if(streamed) {
+                return spool(level);
+            }
+            level.decode();
+            return level;
+        }
+        catch(IOException | ParseException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Blocks until {@code task} is done.
+     *
+     * @return The result of {@code task}, or {@code null} if it failed, in which case the error is printed.
+     */
+    public static <T> T await(Future<T> task) {
+        try {
+            return task.get();
+        }
+        catch(ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+
+    /* Compiled levels */
+
+    /**
+     * Loads a level file created by {@link LevelCompiler}. The file is memory mapped and read directly, so no JSON or
+     * template parsing is needed; only the tile set and layer images are decoded. Tile layers read their tiles from the
+     * mapped file.
+     *
+     * @param directory The folder that file names in the level are relative to.
+     * @param streamed  If true, only the objects in {@link RegionData#always} are read, and the rest are read by {@link
+     *                  LevelStreamer} as they are needed.
+     * @return The level, or {@code null} if the file could not be read, is not a compiled level, or was compiled with a
+     * different {@link World#grid_scaling_factor}.
+     */
+    private static Level loadCompiled(String directory, Path path, boolean streamed) {
+        String file_name = path.getFileName().toString();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Header
+            if(buffer.getInt() != LevelCompiler.magic || buffer.getInt() != LevelCompiler.version) {
+                throw new IOException(file_name + " is not a compiled level or was compiled by another version");
+            }
+            int grid_scaling_factor = buffer.getInt();
+            if(grid_scaling_factor != World.grid_scaling_factor) {
+                throw new IOException(file_name + " was compiled with grid scaling factor " + grid_scaling_factor);
+            }
+            Level level = new Level(directory, buffer.getInt(), buffer.getInt(), buffer.getInt());
+            int region_size = buffer.getInt();
+
+            // Tile sets
+            int num_tile_sets = buffer.getInt();
+            for(int i = 0;i < num_tile_sets;i++) {
+                level.tile_set_sources.add(readString(buffer));
+                level.tile_set_first_gids.add(buffer.getInt());
+            }
+
+            // Layers; object layers only store their number of objects
+            ArrayList<Integer> layer_sizes = new ArrayList<>();
+            int num_layers = buffer.getInt();
+            for(int i = 0;i < num_layers;i++) {
+                byte kind = buffer.get();
+                if(kind == LevelCompiler.object_layer) {
+                    layer_sizes.add(buffer.getInt());
+                    level.layers.add(new ObjectLayer(null));
+                }
+                else if(kind == LevelCompiler.tile_layer) {
+                    double x = buffer.getDouble(), y = buffer.getDouble();
+                    int layer = buffer.getInt();
+                    double parallax = buffer.getDouble();
+                    int num_gids = buffer.getInt();
+                    ByteBuffer gids = buffer.slice();
+                    gids.limit(num_gids*Integer.BYTES);
+                    buffer.position(buffer.position() + num_gids*Integer.BYTES);
+                    level.layers.add(new TileLayerData(x, y, layer, parallax, gids.asIntBuffer()));
+                }
+                else if(kind == LevelCompiler.image_layer) {
+                    double x = buffer.getDouble(), y = buffer.getDouble();
+                    int layer = buffer.getInt(), scale = buffer.getInt();
+                    double parallax = buffer.getDouble();
+                    boolean tile = buffer.get() != 0;
+                    level.layers.add(new ImageLayerData(x, y, layer, scale, parallax, tile, readString(buffer)));
+                }
+                else {
+                    throw new IOException(file_name + " has a layer of unknown kind " + kind);
+                }
+            }
+
+            // Objects, stored by region
+            int regions_x = buffer.getInt(), regions_y = buffer.getInt();
+            RegionData regions = new RegionData(buffer.slice(), region_size, regions_x, regions_y);
+            if(streamed) {
+                regions.readAlways();
+                level.regions = regions;
+            }
+            else {
+                int num_objects = 0;
+                for(int size : layer_sizes) {
+                    num_objects += size;
+                }
+                ArrayList<HashMap<String, Object>> objects = regions.readAll(num_objects);
+                int next = 0;
+                for(LayerData layer : level.layers) {
+                    if(layer instanceof ObjectLayer) {
+                        int size = layer_sizes.remove(0);
+                        ((ObjectLayer)layer).objects.addAll(objects.subList(next, next + size));
+                        next += size;
+                    }
+                }
+            }
+
+            level.decode();
+            return level;
+        }
+        catch(IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Compiles a level parsed from JSON to a temporary file and loads it for streaming, so that its objects are read
+     * from the file as they are needed rather than kept in memory. The file is deleted once mapped where the platform
+     * allows it, and otherwise when the program exits.
+     */
+    private static Level spool(Level level) {
+        File file = null;
+        try {
+            for(LayerData layer : level.layers) {
+                if(layer instanceof ObjectLayer) {
+                    ((ObjectLayer)layer).finish();
+                }
             }
+            file = File.createTempFile("level", LevelCompiler.file_extension);
+            file.deleteOnExit();
+            LevelCompiler.write(level, file, LevelStreamer.getRegionSize());
+            return loadCompiled(level.directory, file.toPath(), true);
         }
-        catch(ParseException e) {
+        catch(IOException e) {
             e.printStackTrace();
+            return null;
+        }
+        finally {
+            if(file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a map of values written by {@link LevelCompiler} into {@code map}.
+     */
+    private static void readMap(ByteBuffer buffer, Map<String, Object> map) throws IOException {
+        int size = buffer.getInt();
+        for(int i = 0;i < size;i++) {
+            String key = readString(buffer);
+            map.put(key, readValue(buffer));
+        }
+    }
+
+    /**
+     * Reads one value written by {@link LevelCompiler}. Lists and maps are read as {@link JSONArray} and {@link
+     * JSONObject} so that they have the same types as values parsed from JSON.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object readValue(ByteBuffer buffer) throws IOException {
+        byte tag = buffer.get();
+        switch(tag) {
+            case LevelCompiler.null_value:
+                return null;
+            case LevelCompiler.boolean_value:
+                return buffer.get() != 0;
+            case LevelCompiler.long_value:
+                return buffer.getLong();
+            case LevelCompiler.double_value:
+                return buffer.getDouble();
+            case LevelCompiler.string_value:
+                return readString(buffer);
+            case LevelCompiler.vector_value:
+                return new Vector2(buffer.getDouble(), buffer.getDouble());
+            case LevelCompiler.vector_array_value:
+                Vector2[] vertices = new Vector2[buffer.getInt()];
+                for(int i = 0;i < vertices.length;i++) {
+                    vertices[i] = new Vector2(buffer.getDouble(), buffer.getDouble());
+                }
+                return vertices;
+            case LevelCompiler.list_value:
+                JSONArray list = new JSONArray();
+                int size = buffer.getInt();
+                for(int i = 0;i < size;i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            case LevelCompiler.map_value:
+                JSONObject map = new JSONObject();
+                readMap(buffer, map);
+                return map;
+            default:
+                throw new IOException("Unknown value tag " + tag);
         }
     }
 
@@ -160,128 +753,132 @@ public class LevelParser {
     /* Helper functions */
 
     /**
-     * Returns the full text of {@code file_name} as a {@link String}. Returns {@code null} if the file could not be
-     * opened.
+     * @return The attributes of an object template, parsed by {@link #XMLParseTemplate} the first time the template is
+     * used. The returned map is shared and must not be modified; see {@link #putAllCopied}.
      */
-    private static String getFileText(String file_name) {
-        File file = new File(file_name);
-        Scanner scanner;
-        try {
-            scanner = new Scanner(file);
-        }
-        catch(FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
-        }
-        StringBuilder file_text = new StringBuilder();
-        while(scanner.hasNextLine()) {
-            file_text.append(scanner.nextLine());
-        }
-        return file_text.toString();
+    private static HashMap<String, Object> getTemplate(String file_name) {
+        return template_cache.get(file_name, files -> {
+            files.add(new File(file_name));
+            return XMLParseTemplate(file_name);
+        });
     }
 
     /**
-     * Creates {@link TileSet} objects from each tileset in a JSON file generated by Tiled.
-     *
-     * @param main      The top level JSON object for the file.
-     * @param directory The path to the folder containing the JSON file.
+     * @return The tile set in {@code tsx_file}, decoded the first time it is used with {@code first_gid}.
      */
-    private static ArrayList<TileSet> parseTilesets(JSONObject main, String directory) {
-        ArrayList<TileSet> tile_sets = new ArrayList<>();
+    private static TileSet getTileSet(String directory, String tsx_file, int first_gid) {
+        return tile_set_cache.get(directory + tsx_file + "#" + first_gid, files -> {
+            TileSet tile_set = new TileSet(directory, tsx_file, first_gid);
+            for(String file : tile_set.getFiles()) {
+                files.add(new File(file));
+            }
+            return tile_set;
+        });
+    }
 
-        JSONArray ts = (JSONArray)main.get("tilesets");
-        for(Object t : ts) {
-            String source_file = (String)((JSONObject)t).get("source");
-            long first_gid = (long)((JSONObject)t).get("firstgid");
-            tile_sets.add(new TileSet(directory, source_file, (int)first_gid));
+    /**
+     * Copies the values in {@code source} into {@code args}. Vertex arrays are copied, since colliders modify the
+     * vertices they are created from.
+     */
+    static void putAllCopied(HashMap<String, Object> args, HashMap<String, Object> source) {
+        for(Map.Entry<String, Object> entry : source.entrySet()) {
+            Object value = entry.getValue();
+            if(value instanceof Vector2[]) {
+                Vector2[] vertices = ((Vector2[])value).clone();
+                for(int i = 0;i < vertices.length;i++) {
+                    vertices[i] = vertices[i].copy();
+                }
+                value = vertices;
+            }
+            args.put(entry.getKey(), value);
         }
-
-        return tile_sets;
     }
 
     /**
-     * Parses object data from a {@link JSONArray} of object data. Instantiates objects using the lambda functions in
-     * {@code constructors}.
+     * Starts parsing object data from a {@link JSONArray} of object data.
      *
+     * @return The tasks parsing the args list of each object, in the order they appear in {@code objects}.
      * @see #loadFromJson
      */
-    private static ArrayList<PhysicsObject> parseObjects(String directory, double xoffset, double yoffset,
-                                                         JSONArray objects, HashMap<String, TypeMap> constructors) {
-        ArrayList<PhysicsObject> instances = new ArrayList<>();
+    private static ArrayList<Future<HashMap<String, Object>>> parseObjects(String directory, double xoffset,
+                                                                          double yoffset, JSONArray objects) {
+        ArrayList<Future<HashMap<String, Object>>> tasks = new ArrayList<>();
         if(objects == null) {
-            return instances;
+            return tasks;
         }
         for(Object o : objects) {
             JSONObject object = (JSONObject)o;
+            tasks.add(decoders.submit(() -> parseObject(directory, xoffset, yoffset, object)));
+        }
+        return tasks;
+    }
 
-            // Make list of args
-            HashMap<String, Object> args = new HashMap<String, Object>(object);
-
-            // Parse template
-            String template_file = (String)object.get("template");
-            if(template_file != null) {
-                HashMap<String, Object> template_data = XMLParseTemplate(directory + template_file);
-                args.putAll(template_data);
-            }
-
-            // Parse type
-            Object type_obj = args.get("type");
-            String type;
-            if(type_obj != null) {
-                type = ((String)type_obj).toLowerCase();
-                args.put("type", type);
-            }
-
-            // Get position vector
-            Object o_x = args.get("x");
-            Object o_y = args.get("y");
-            Object o_h = args.get("height");
-            if(o_x != null && o_y != null) {
-                double x = Double.parseDouble(o_x.toString())*World.grid_scaling_factor + xoffset;
-                double y = Double.parseDouble(o_y.toString())*World.grid_scaling_factor + yoffset
-                        - Double.parseDouble(o_h.toString())*World.grid_scaling_factor;
-                args.put("position", new Vector2(x, y));
-            }
-
-
-            // Get vertices
-            JSONArray o_vertices = (JSONArray)args.get("polygon");
-            if(o_vertices != null) {
-                Vector2[] vertices = new Vector2[o_vertices.size()];
-                int i = 0;
-                for(Object v : o_vertices) {
-                    JSONObject vertex = (JSONObject)v;
-                    double x = Double.parseDouble(vertex.get("x").toString())*World.grid_scaling_factor;
-                    double y = Double.parseDouble(vertex.get("y").toString())*World.grid_scaling_factor;
-                    vertices[i++] = new Vector2(x, y);
-                }
-                args.put("vertices", vertices);
+    /**
+     * Parses the args list of one object from a Tiled map, including its template. See {@link TypeMap}.
+     */
+    private static HashMap<String, Object> parseObject(String directory, double xoffset, double yoffset,
+                                                       JSONObject object) {
+        // Make list of args
+        HashMap<String, Object> args = new HashMap<String, Object>(object);
+
+        // Parse template
+        String template_file = (String)object.get("template");
+        if(template_file != null) {
+            HashMap<String, Object> template_data = getTemplate(directory + template_file);
+            if(template_data != null) {
+                putAllCopied(args, template_data);
             }
+        }
+
+        // Parse type
+        Object type_obj = args.get("type");
+        String type;
+        if(type_obj != null) {
+            type = ((String)type_obj).toLowerCase();
+            args.put("type", type);
+        }
+
+        // Get position vector
+        Object o_x = args.get("x");
+        Object o_y = args.get("y");
+        Object o_h = args.get("height");
+        if(o_x != null && o_y != null) {
+            double x = Double.parseDouble(o_x.toString())*World.grid_scaling_factor + xoffset;
+            double y = Double.parseDouble(o_y.toString())*World.grid_scaling_factor + yoffset
+                    - Double.parseDouble(o_h.toString())*World.grid_scaling_factor;
+            args.put("position", new Vector2(x, y));
+        }
 
-            // Parse properties
-            JSONArray properties = (JSONArray)args.get("properties");
-            args.putAll(parseProperties(properties));
-            args.remove("properties");
 
-            // Make instance
-            String instance_type = (String)args.get("type");
-            TypeMap constructor = constructors.get(instance_type);
-            if(constructor != null) {
-                instances.add(constructor.spawn(args));
+        // Get vertices
+        JSONArray o_vertices = (JSONArray)args.get("polygon");
+        if(o_vertices != null) {
+            Vector2[] vertices = new Vector2[o_vertices.size()];
+            int i = 0;
+            for(Object v : o_vertices) {
+                JSONObject vertex = (JSONObject)v;
+                double x = Double.parseDouble(vertex.get("x").toString())*World.grid_scaling_factor;
+                double y = Double.parseDouble(vertex.get("y").toString())*World.grid_scaling_factor;
+                vertices[i++] = new Vector2(x, y);
             }
+            args.put("vertices", vertices);
         }
-        return instances;
+
+        // Parse properties
+        JSONArray properties = (JSONArray)args.get("properties");
+        args.putAll(parseProperties(properties));
+        args.remove("properties");
+
+        return args;
     }
 
     /**
-     * Parses tile and image layers from a {@link JSONObject} containing one layer from a Tiled map. Instantiates either
-     * a new {@link TileLayer} or {@link ImageLayer} object depending on the contents of {@code layer}.
+     * Parses tile and image layers from a {@link JSONObject} containing one layer from a Tiled map.
      *
-     * @param directory The path to the folder containing the JSON file.
-     * @param tile_sets The list of tilesets, likely returned by {@link #parseTilesets}.
+     * @return Data for either a new {@link TileLayer} or {@link ImageLayer} object depending on the contents of {@code
+     * layer}, or {@code null} if the layer is empty.
      */
-    private static void parseImageLayer(String directory, double xoffset, double yoffset, JSONObject layer,
-                                        ArrayList<TileSet> tile_sets) {
+    private static LayerData parseImageLayer(double xoffset, double yoffset, JSONObject layer) throws IOException {
         String layer_type = (String)layer.get("type");
 
         // Get layer custom properties
@@ -300,14 +897,9 @@ public class LevelParser {
 
         // Create tile layer object
         if(layer_type.equals("tilelayer")) {
-            JSONArray tiles = (JSONArray)layer.get("data");
-            if(tiles != null) {
-                Object[] raw_tile_data = tiles.toArray();
-                int[] tile_data = new int[raw_tile_data.length];
-                for(int i = 0;i < tile_data.length;i++) {
-                    tile_data[i] = (int)(long)raw_tile_data[i];
-                }
-                new TileLayer(xoffset, yoffset, tile_layer, parallax, tile_sets, tile_data);
+            int[] tile_data = TiledMapReader.decodeTileData(layer);
+            if(tile_data != null) {
+                return new TileLayerData(xoffset, yoffset, tile_layer, parallax, IntBuffer.wrap(tile_data));
             }
         }
 
@@ -324,8 +916,10 @@ public class LevelParser {
                 scale = (int)(long)scale_object;
             }
             String image_file_name = (String)layer.get("image");
-            new ImageLayer(xoffset, yoffset, tile_layer, scale, parallax, tile, directory + image_file_name);
+            return new ImageLayerData(xoffset, yoffset, tile_layer, scale, parallax, tile, image_file_name);
         }
+
+        return null;
     }
 
     /**
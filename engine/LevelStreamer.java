@@ -0,0 +1,456 @@
+package engine;
+
+import engine.collider.StaticGeometry;
+import engine.graphics.GameGraphics;
+import engine.objects.GameObject;
+import engine.objects.PhysicsObject;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Future;
+
+/**
+ * Creates and deletes the objects of a level as the camera approaches and leaves them, so that only the part of a large
+ * level near the camera exists at once. The level is divided into square regions; each step, regions within one region
+ * of the camera's view are loaded, and once more than the resident budget are loaded the regions the camera left
+ * longest ago are unloaded. Regions more than {@link #resident_margin} regions from the view are always unloaded, so
+ * resident regions fit in {@link #residentWidth} by {@link #residentHeight}, which the spatial grids are sized to.
+ * Objects deleted by the game, such as collected coins, are not created again when their region is reloaded.
+ * <p>
+ * The objects of each region stay in the level's compiled file until the region comes within {@link #resident_margin}
+ * regions of the view, when they are read on the loader thread; see {@link LevelParser.RegionData}. They are dropped
+ * once their objects are created or the region leaves that margin again, so only regions near the camera are in
+ * memory, along with a bit for each object the game deleted in regions that have been visited.
+ * <p>
+ * Objects belong to the region they were created in, but may move out of it. When a region is unloaded, objects that
+ * are still near the camera according to {@link PhysicsObject#isNearCamera} are kept, and are deleted once they are
+ * no longer near the camera, unless their region has been loaded again by then.
+ * <p>
+ * Streaming is enabled with {@link #setRegionSize}, after which {@link LevelParser} loads levels for streaming and
+ * {@link LevelParser.Level#activate} creates a streamer for each. Tile layers need no streaming, since {@link
+ * engine.graphics.TileLayer} only reads and renders the chunks near the camera.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class LevelStreamer extends GameObject {
+
+    private static int region_size_in_grid = 0; // Region size in world grid squares; 0 if streaming is disabled
+    private static final int resident_margin = 2; // Regions further than this from the camera's view are unloaded
+    private static int max_resident_regions = 24;
+    private static int max_loads_per_step = 1;
+    private static final HashSet<String> kept_types = new HashSet<>();
+
+    /**
+     * The objects in one region. Objects belong to the region containing their starting position. Regions only exist
+     * while they are being read, resident, or kept, or once the game has deleted one of their objects.
+     */
+    private static class Region {
+        final int x, y, index; // Position in regions; index is x*regions_y + y
+        Future<ArrayList<HashMap<String, Object>>> objects; // Args lists being read in map order; null if not read
+        PhysicsObject[] instances; // Instance created from each args list while resident or kept; null otherwise
+        BitSet consumed; // Set for objects deleted by the game, which are not created again; null if none are
+        boolean resident = false;
+        int num_kept = 0; // Instances still alive after this region was unloaded
+        long last_needed = -1; // Last step this region was near the camera
+
+        Region(int x, int y, int index) {
+            this.x = x;
+            this.y = y;
+            this.index = index;
+        }
+    }
+
+    private final HashMap<String, LevelParser.TypeMap> constructors;
+    private final LevelParser.RegionData data;
+    private final int region_size; // In world pixels
+    private final HashMap<Integer, Region> regions = new HashMap<>(); // By index
+    private final ArrayList<Region> resident = new ArrayList<>();
+    private final ArrayList<Region> reading = new ArrayList<>(); // Regions that are not resident with objects != null
+    private final ArrayList<Region> unloaded_with_kept = new ArrayList<>(); // Unloaded regions with num_kept > 0
+    private final ArrayList<Region> to_load = new ArrayList<>(); // Scratch list for stream
+    private long step = 0;
+
+
+    /* Settings */
+
+    /**
+     * Enables or disables streaming for levels loaded from now on. Levels compiled by {@link LevelCompiler} are
+     * streamed in the region size they were compiled with.
+     *
+     * @param size The width and height of a region in world grid squares, or 0 to create every object when a level is
+     *             activated.
+     */
+    public static void setRegionSize(int size) {
+        region_size_in_grid = Math.max(0, size);
+    }
+
+    public static boolean isEnabled() {
+        return region_size_in_grid > 0;
+    }
+
+    static int getRegionSize() {
+        return region_size_in_grid;
+    }
+
+    /**
+     * Sets how many regions may be loaded at once. More are kept loaded if more are near the camera. Default: 24.
+     */
+    public static void setMaxResidentRegions(int regions) {
+        max_resident_regions = Math.max(1, regions);
+    }
+
+    /**
+     * Sets how many regions may be loaded in one step, which spreads the cost of creating objects over several steps as
+     * the camera moves. Regions near the camera when a level is activated are all loaded at once. Default: 1.
+     */
+    public static void setMaxLoadsPerStep(int regions) {
+        max_loads_per_step = Math.max(1, regions);
+    }
+
+    /**
+     * @param size The region size of the level in world grid squares.
+     * @return The width in pixels of the area that resident regions fit in: the camera's view plus {@link
+     * #resident_margin} regions on each side, plus a region on each side for regions the view only partly overlaps.
+     */
+    static int residentWidth(int size) {
+        return GameGraphics.getWindowWidth() + 2*(resident_margin + 1)*size*World.getGridSize();
+    }
+
+    /**
+     * @return The height in pixels of the area that resident regions fit in.
+     * @see #residentWidth(int)
+     */
+    static int residentHeight(int size) {
+        return GameGraphics.getWindowHeight() + 2*(resident_margin + 1)*size*World.getGridSize();
+    }
+
+    /**
+     * Makes objects of {@code type} always exist while their level is active, e.g. spawn points that must be found
+     * when the player respawns far from them. Objects with the property "globally loaded" are also always created.
+     *
+     * @param type An object type name as used in {@link LevelParser.TypeMap}.
+     */
+    public static void keepLoaded(String type) {
+        kept_types.add(type);
+    }
+
+    /**
+     * @return True if objects of {@code type} are created when the level is activated rather than with their region.
+     */
+    static boolean isKeptType(String type) {
+        return kept_types.contains(type);
+    }
+
+
+    /* Constructor */
+
+    /**
+     * Creates the objects of a level that are never streamed. Call {@link #stream} once the camera has been placed to
+     * create the objects near it.
+     *
+     * @param data         The level's objects.
+     * @param constructors A map of object names to object constructor lambda functions.
+     * @param instances    Objects created immediately are added to this list.
+     */
+    LevelStreamer(LevelParser.RegionData data, HashMap<String, LevelParser.TypeMap> constructors,
+                  ArrayList<PhysicsObject> instances) {
+        super(Game.camera_priority - 1, 0);
+        this.suspend_tier = Integer.MAX_VALUE;
+        this.visible = false;
+        this.constructors = constructors;
+        this.data = data;
+        this.region_size = data.region_size*World.getGridSize();
+
+        for(HashMap<String, Object> args : data.always) {
+            LevelParser.TypeMap constructor = constructors.get(args.get("type"));
+            if(constructor != null) {
+                instances.add(constructor.spawn(args));
+            }
+        }
+        data.always.clear();
+    }
+
+
+    /* Events */
+
+    @Override
+    public void update() {
+        stream(max_loads_per_step);
+    }
+
+
+    /* Streaming functions */
+
+    /**
+     * Loads the regions near the camera, closest first, and unloads regions over the resident budget that are not near
+     * the camera.
+     *
+     * @param max_loads The number of regions to load.
+     */
+    void stream(int max_loads) {
+        step++;
+
+        // Start reading regions within the resident margin of the camera's view before they are needed
+        int margin = resident_margin*region_size;
+        int near_min_x = regionX(GameGraphics.camera_x - margin);
+        int near_max_x = regionX(GameGraphics.camera_x + GameGraphics.getWindowWidth() + margin);
+        int near_min_y = regionY(GameGraphics.camera_y - margin);
+        int near_max_y = regionY(GameGraphics.camera_y + GameGraphics.getWindowHeight() + margin);
+        for(int x = near_min_x;x <= near_max_x;x++) {
+            for(int y = near_min_y;y <= near_max_y;y++) {
+                int index = x*data.regions_y + y;
+                Region region = regions.get(index);
+                if(region == null) {
+                    if(data.count(index) == 0) {
+                        continue;
+                    }
+                    region = new Region(x, y, index);
+                    regions.put(index, region);
+                }
+                if(!region.resident && region.objects == null) {
+                    region.objects = data.readAsync(index);
+                    reading.add(region);
+                }
+            }
+        }
+
+        // Regions within one region of the camera's view
+        int min_x = regionX(GameGraphics.camera_x - region_size);
+        int max_x = regionX(GameGraphics.camera_x + GameGraphics.getWindowWidth() + region_size);
+        int min_y = regionY(GameGraphics.camera_y - region_size);
+        int max_y = regionY(GameGraphics.camera_y + GameGraphics.getWindowHeight() + region_size);
+        to_load.clear();
+        for(int x = min_x;x <= max_x;x++) {
+            for(int y = min_y;y <= max_y;y++) {
+                Region region = regions.get(x*data.regions_y + y);
+                if(region != null) {
+                    region.last_needed = step;
+                    if(!region.resident) {
+                        to_load.add(region);
+                    }
+                }
+            }
+        }
+
+        if(!to_load.isEmpty()) {
+            double center_x = (GameGraphics.camera_x + GameGraphics.getWindowWidth()/2.0)/region_size - 0.5;
+            double center_y = (GameGraphics.camera_y + GameGraphics.getWindowHeight()/2.0)/region_size - 0.5;
+            to_load.sort((a, b) -> Double.compare(distanceSquared(a, center_x, center_y),
+                    distanceSquared(b, center_x, center_y)));
+            ArrayList<PhysicsObject> created = new ArrayList<>();
+            for(int i = 0;i < to_load.size() && i < max_loads;i++) {
+                load(to_load.get(i), created);
+            }
+            finishLoading(created);
+        }
+
+        // Delete kept objects that have left the camera
+        for(int i = unloaded_with_kept.size() - 1;i >= 0;i--) {
+            Region region = unloaded_with_kept.get(i);
+            releaseKept(region);
+            if(region.num_kept == 0) {
+                unloaded_with_kept.remove(i);
+                forgetIfUnused(region);
+            }
+        }
+
+        // Unload regions too far from the camera, then the regions the camera left longest ago
+        for(int i = resident.size() - 1;i >= 0;i--) {
+            Region region = resident.get(i);
+            if(!isNear(region, near_min_x, near_max_x, near_min_y, near_max_y)) {
+                unload(region);
+            }
+        }
+        while(resident.size() > max_resident_regions) {
+            Region oldest = null;
+            for(Region region : resident) {
+                if(region.last_needed != step && (oldest == null || region.last_needed < oldest.last_needed)) {
+                    oldest = region;
+                }
+            }
+            if(oldest == null) {
+                break;
+            }
+            unload(oldest);
+        }
+
+        // Drop the objects read for regions the camera has moved away from
+        for(int i = reading.size() - 1;i >= 0;i--) {
+            Region region = reading.get(i);
+            if(!isNear(region, near_min_x, near_max_x, near_min_y, near_max_y)) {
+                region.objects.cancel(false);
+                region.objects = null;
+                reading.remove(i);
+                forgetIfUnused(region);
+            }
+        }
+    }
+
+    /**
+     * Calls the world loaded events of newly created objects and bakes their static colliders. Used for objects created
+     * both when the level is activated and when regions are loaded.
+     */
+    static void finishLoading(ArrayList<PhysicsObject> instances) {
+        for(PhysicsObject instance : instances) {
+            if(instance != null) {
+                instance.worldLoadedEvent();
+            }
+        }
+
+        // Bake level geometry into a single collision mesh; baked objects no longer need update events
+        StaticGeometry.bake(instances);
+        for(PhysicsObject instance : instances) {
+            if(instance != null && instance.collider != null && instance.collider.isBaked()) {
+                Game.stopUpdating(instance);
+            }
+        }
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Creates the objects of {@code region}. Regions are read while they are still a region away from being needed, so
+     * this only waits for the loader thread if it has fallen behind the camera.
+     */
+    private void load(Region region, ArrayList<PhysicsObject> created) {
+        ArrayList<HashMap<String, Object>> objects = LevelParser.await(region.objects);
+        region.objects = null;
+        reading.remove(region);
+        if(objects == null) {
+            objects = new ArrayList<>();
+        }
+        if(region.instances == null) {
+            region.instances = new PhysicsObject[objects.size()];
+        }
+
+        for(int i = 0;i < objects.size();i++) {
+            // Kept objects are still alive and become part of the region again
+            PhysicsObject kept = region.instances[i];
+            if(kept != null && kept.isDeleted()) {
+                consume(region, i);
+            }
+            if(isConsumed(region, i) || region.instances[i] != null) {
+                continue;
+            }
+
+            // Objects of kept types are null, since they were created with the level
+            HashMap<String, Object> args = objects.get(i);
+            LevelParser.TypeMap constructor = args == null ? null : constructors.get(args.get("type"));
+            if(constructor != null) {
+                PhysicsObject instance = constructor.spawn(args);
+                region.instances[i] = instance;
+                created.add(instance);
+            }
+        }
+        region.resident = true;
+        resident.add(region);
+        if(region.num_kept > 0) {
+            region.num_kept = 0;
+            unloaded_with_kept.remove(region);
+        }
+    }
+
+    private void unload(Region region) {
+        for(int i = 0;i < region.instances.length;i++) {
+            PhysicsObject instance = region.instances[i];
+            if(instance == null) {
+                continue;
+            }
+
+            // Objects deleted by the game stay deleted, and persistent objects live on outside of the region
+            if(instance.isDeleted() || instance.isPersistent()) {
+                consume(region, i);
+            }
+            else if(instance.isNearCamera(region_size)) {
+                region.num_kept++;
+            }
+            else {
+                instance.delete();
+                region.instances[i] = null;
+            }
+        }
+        region.resident = false;
+        resident.remove(region);
+        if(region.num_kept > 0) {
+            unloaded_with_kept.add(region);
+        }
+        else {
+            forgetIfUnused(region);
+        }
+    }
+
+    /**
+     * Deletes the kept objects of an unloaded region that are no longer near the camera.
+     */
+    private void releaseKept(Region region) {
+        for(int i = 0;i < region.instances.length;i++) {
+            PhysicsObject instance = region.instances[i];
+            if(instance == null) {
+                continue;
+            }
+            if(instance.isDeleted()) {
+                consume(region, i);
+                region.num_kept--;
+            }
+            else if(!instance.isNearCamera(region_size)) {
+                instance.delete();
+                region.instances[i] = null;
+                region.num_kept--;
+            }
+        }
+    }
+
+    /**
+     * Marks object {@code i} of {@code region} as deleted by the game so that it is not created again.
+     */
+    private static void consume(Region region, int i) {
+        if(region.consumed == null) {
+            region.consumed = new BitSet();
+        }
+        region.consumed.set(i);
+        region.instances[i] = null;
+    }
+
+    private static boolean isConsumed(Region region, int i) {
+        return region.consumed != null && region.consumed.get(i);
+    }
+
+    /**
+     * Removes {@code region} once nothing about it needs to be remembered. It is created again if it is needed.
+     */
+    private void forgetIfUnused(Region region) {
+        if(region.resident || region.objects != null || region.num_kept > 0) {
+            return;
+        }
+        region.instances = null;
+        if(region.consumed == null) {
+            regions.remove(region.index);
+        }
+    }
+
+    private static boolean isNear(Region region, int min_x, int max_x, int min_y, int max_y) {
+        return region.x >= min_x && region.x <= max_x && region.y >= min_y && region.y <= max_y;
+    }
+
+    private static double distanceSquared(Region region, double x, double y) {
+        return (region.x - x)*(region.x - x) + (region.y - y)*(region.y - y);
+    }
+
+    /**
+     * @return The column of the region containing {@code x}, clamped to the level.
+     */
+    private int regionX(double x) {
+        return Math.min(Math.max(0, (int)Math.floor(x/region_size)), data.regions_x - 1);
+    }
+
+    /**
+     * @return The row of the region containing {@code y}, clamped to the level.
+     */
+    private int regionY(double y) {
+        return Math.min(Math.max(0, (int)Math.floor(y/region_size)), data.regions_y - 1);
+    }
+}
@@ -0,0 +1,110 @@
+package engine;
+
+import engine.graphics.GameGraphics;
+import engine.objects.GameObject;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures how long {@link Game} takes to add the objects of a large level to its update and draw queues. Loads a map
+ * with {@link LevelParser}, creates one placeholder object for each object in the map, repeated a number of times, and
+ * times the step in which they are merged into the queues. Priorities and layers are random, with a fixed seed so that
+ * runs are comparable. For reference, the same objects are also inserted one at a time with a linear scan, which is how
+ * the queues were filled before they were merged in a single pass.
+ * <p>
+ * Usage: {@code LoadBenchmark <directory> <map.json> [copies] [runs]}; e.g. {@code LoadBenchmark levels/ test.json 100}
+ * for test.json's objects multiplied 100 times.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class LoadBenchmark {
+
+    /**
+     * An object with no behavior, standing in for a level object.
+     */
+    private static class Placeholder extends GameObject {
+        Placeholder(int priority, int layer) {
+            super(priority, layer);
+            this.visible = false;
+        }
+    }
+
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.out.println("Usage: LoadBenchmark <directory> <map.json> [copies] [runs]");
+            return;
+        }
+        int copies = args.length >= 3 ? Integer.parseInt(args[2]) : 100;
+        int runs = args.length >= 4 ? Integer.parseInt(args[3]) : 5;
+
+        LevelParser.Level level = LevelParser.load(args[0], args[1], false);
+        if(level == null) {
+            return;
+        }
+        int num_objects = 0;
+        for(LevelParser.LayerData layer : level.layers) {
+            if(layer instanceof LevelParser.ObjectLayer) {
+                num_objects += ((LevelParser.ObjectLayer)layer).objects.size();
+            }
+        }
+        int n = num_objects*copies;
+        System.out.printf("%s: %d objects x %d = %d objects%n", args[1], num_objects, copies, n);
+
+        GameGraphics.initHeadless(640, 480);
+        for(int run = 0;run < runs;run++) {
+            Random random = new Random(run);
+            ArrayList<GameObject> objects = new ArrayList<>(n);
+
+            long start_time = System.nanoTime();
+            for(int i = 0;i < n;i++) {
+                objects.add(new Placeholder(random.nextInt(21) - 10, random.nextInt(21) - 10));
+            }
+            long create_time = System.nanoTime() - start_time;
+
+            // The new objects are merged into the queues at the end of the step
+            start_time = System.nanoTime();
+            Game.runSteps(1);
+            long merge_time = System.nanoTime() - start_time;
+
+            // Insert the same objects one at a time, as before
+            start_time = System.nanoTime();
+            ArrayList<GameObject> update_queue = new ArrayList<>();
+            ArrayList<GameObject> draw_queue = new ArrayList<>();
+            for(GameObject o : objects) {
+                insertLinear(update_queue, draw_queue, o);
+            }
+            long linear_time = System.nanoTime() - start_time;
+
+            System.out.printf("Run %d: create %.1f ms, merge step %.1f ms, linear insertion %.1f ms%n", run,
+                    create_time/1e6, merge_time/1e6, linear_time/1e6);
+
+            for(GameObject o : objects) {
+                o.delete();
+            }
+            Game.runSteps(1);
+        }
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Inserts {@code object} at the first place in each queue where it belongs, found by scanning from the front.
+     */
+    private static void insertLinear(ArrayList<GameObject> update_queue, ArrayList<GameObject> draw_queue,
+                                     GameObject object) {
+        int i = 0;
+        while(i < update_queue.size() && update_queue.get(i).getPriority() > object.getPriority()) {
+            i++;
+        }
+        update_queue.add(i, object);
+
+        i = 0;
+        while(i < draw_queue.size() && draw_queue.get(i).getLayer() < object.getLayer()) {
+            i++;
+        }
+        draw_queue.add(i, object);
+    }
+}
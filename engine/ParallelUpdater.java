@@ -0,0 +1,132 @@
+package engine;
+
+import engine.collider.ColliderGrid;
+import engine.objects.PhysicsObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates a batch of {@link PhysicsObject} instances on a {@link ForkJoinPool}. The batch is split into islands using
+ * {@link ColliderGrid#findIslands}; objects in the same island are updated one at a time in queue order, while
+ * different islands are updated at the same time on different threads. {@link ColliderGrid} is kept read-only for the
+ * duration of the batch, with collider moves committed in batch order once every island is done.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+class ParallelUpdater {
+
+    private static final int min_task_size = 8; // Objects below which a task is not split further
+
+    private final ForkJoinPool pool;
+    private ArrayList<? extends PhysicsObject> batch;
+    private int suspend_tier;
+    private long[] keys = new long[64]; // Island in the high 32 bits and batch index in the low 32 bits
+    private int[] island_starts = new int[64]; // Index in keys of the first object of each island, plus the end
+    private int num_islands = 0;
+
+    /**
+     * @param threads The number of worker threads to use.
+     */
+    ParallelUpdater(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Calls {@code update()} on every object in {@code batch} that is not deleted or suspended. Returns once every
+     * object has been updated.
+     *
+     * @param suspend_tier Objects with a {@code suspend_tier} lower than this are skipped.
+     */
+    void update(ArrayList<? extends PhysicsObject> batch, int suspend_tier) {
+        this.batch = batch;
+        this.suspend_tier = suspend_tier;
+        findIslands();
+
+        ColliderGrid.beginParallelUpdate();
+        try {
+            pool.invoke(new IslandTask(0, num_islands));
+        }
+        finally {
+            ColliderGrid.endParallelUpdate();
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Sorts the batch by island into {@link #keys} and fills {@link #island_starts}. Objects without a collider in the
+     * grid each get an island of their own.
+     */
+    private void findIslands() {
+        int n = batch.size();
+        if(keys.length < n) {
+            keys = new long[Math.max(n, keys.length*2)];
+            island_starts = new int[keys.length + 1];
+        }
+
+        ColliderGrid.findIslands();
+        for(int i = 0;i < n;i++) {
+            int island = ColliderGrid.islandOf(batch.get(i).collider);
+            keys[i] = (long)island << 32 | i;
+        }
+        Arrays.sort(keys, 0, n); // Keeps queue order within each island
+
+        num_islands = 0;
+        for(int k = 0;k < n;k++) {
+            int island = (int)(keys[k] >> 32);
+            if(k == 0 || island == -1 || island != (int)(keys[k - 1] >> 32)) {
+                island_starts[num_islands++] = k;
+            }
+        }
+        island_starts[num_islands] = n;
+    }
+
+    private void updateIsland(int island) {
+        for(int k = island_starts[island];k < island_starts[island + 1];k++) {
+            PhysicsObject o = batch.get((int)keys[k]);
+            if(!o.isDeleted() && o.getSuspendTier() >= suspend_tier) {
+                ColliderGrid.setUpdatingIndex((int)keys[k]);
+                o.update();
+            }
+        }
+    }
+
+    /**
+     * Updates the islands in {@code [first, last)}, splitting the range between threads while it holds enough objects.
+     */
+    private class IslandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int first, last;
+
+        IslandTask(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if(last - first > 1 && island_starts[last] - island_starts[first] > min_task_size) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new IslandTask(first, middle), new IslandTask(middle, last));
+            }
+            else {
+                for(int island = first;island < last;island++) {
+                    updateIsland(island);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package engine;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a JSON map file exported from Tiled as a stream of parser events, without holding the text of the file in
+ * memory. Builds the same tree of {@link JSONObject} and {@link JSONArray} nodes as {@link JSONParser#parse}, except
+ * that the {@code data} array of each layer is read straight into an {@code int[]} rather than a list of boxed numbers.
+ * Layer data encoded in base64, optionally compressed with zlib or gzip, is decoded by {@link #decodeTileData}.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+class TiledMapReader implements ContentHandler {
+
+    private final ArrayList<Object> stack = new ArrayList<>(); // Open objects and arrays, outermost first
+    private final ArrayList<String> keys = new ArrayList<>(); // Key being read in each open object; null for arrays
+    private Object root;
+
+    // Tile data of the layer being read
+    private boolean reading_tiles = false;
+    private int[] tiles = new int[0];
+    private int num_tiles;
+
+    private TiledMapReader() {}
+
+    /**
+     * @return The top level object of the map.
+     */
+    static JSONObject read(Reader reader) throws IOException, ParseException {
+        TiledMapReader handler = new TiledMapReader();
+        new JSONParser().parse(reader, handler);
+        if(!(handler.root instanceof JSONObject)) {
+            throw new IOException("Map file does not contain a JSON object");
+        }
+        return (JSONObject)handler.root;
+    }
+
+    /**
+     * Returns the tiles of a tile layer read by {@link #read}.
+     *
+     * @param layer A tile layer from a Tiled map.
+     * @return The gid of each tile in the layer, or {@code null} if the layer has no data.
+     * @throws IOException If the data uses an unsupported encoding or compression, or is malformed.
+     */
+    static int[] decodeTileData(JSONObject layer) throws IOException {
+        Object data = layer.get("data");
+        if(data == null || data instanceof int[]) {
+            return (int[])data;
+        }
+
+        // Layers built by another parser
+        if(data instanceof JSONArray) {
+            JSONArray list = (JSONArray)data;
+            int[] gids = new int[list.size()];
+            for(int i = 0;i < gids.length;i++) {
+                gids[i] = (int)(long)list.get(i);
+            }
+            return gids;
+        }
+
+        String encoding = (String)layer.get("encoding");
+        if(!(data instanceof String) || !"base64".equals(encoding)) {
+            throw new IOException("Unsupported tile layer encoding " + encoding);
+        }
+        byte[] bytes = Base64.getMimeDecoder().decode((String)data);
+
+        String compression = (String)layer.get("compression");
+        if(compression != null && !compression.isEmpty()) {
+            InputStream in;
+            switch(compression) {
+                case "zlib":
+                    in = new InflaterInputStream(new ByteArrayInputStream(bytes));
+                    break;
+                case "gzip":
+                    in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+                    break;
+                default:
+                    throw new IOException("Unsupported tile layer compression " + compression);
+            }
+            bytes = readAll(in);
+        }
+
+        // Gids are stored as little endian 32 bit integers
+        if(bytes.length%Integer.BYTES != 0) {
+            throw new IOException("Tile layer data has " + bytes.length + " bytes, which is not a whole number of gids");
+        }
+        int[] gids = new int[bytes.length/Integer.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(gids);
+        return gids;
+    }
+
+
+    /* Parser events */
+
+    @Override
+    public void startJSON() {}
+
+    @Override
+    public void endJSON() {}
+
+    @Override
+    public boolean startObject() {
+        open(new JSONObject());
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        close();
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        keys.set(keys.size() - 1, key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        keys.set(keys.size() - 1, null);
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        if(isLayerData()) {
+            reading_tiles = true;
+            num_tiles = 0;
+        }
+        else {
+            open(new JSONArray());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        if(reading_tiles) {
+            reading_tiles = false;
+            add(Arrays.copyOf(tiles, num_tiles));
+        }
+        else {
+            close();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) throws IOException {
+        if(reading_tiles) {
+            if(!(value instanceof Long)) {
+                throw new IOException("Tile layer data contains " + value + ", which is not a gid");
+            }
+            if(num_tiles == tiles.length) {
+                tiles = Arrays.copyOf(tiles, Math.max(1024, tiles.length*2));
+            }
+            tiles[num_tiles++] = ((Long)value).intValue();
+        }
+        else {
+            add(value);
+        }
+        return true;
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * @return True if the array starting now is the {@code data} entry of an object in a {@code layers} array.
+     */
+    private boolean isLayerData() {
+        int n = stack.size();
+        return n >= 3 && "data".equals(keys.get(n - 1)) && stack.get(n - 2) instanceof JSONArray
+                && "layers".equals(keys.get(n - 3));
+    }
+
+    private void open(Object node) {
+        add(node);
+        stack.add(node);
+        keys.add(null);
+    }
+
+    private void close() {
+        stack.remove(stack.size() - 1);
+        keys.remove(keys.size() - 1);
+    }
+
+    /**
+     * Adds {@code value} to the innermost open object or array, or makes it the root if none is open.
+     */
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        if(stack.isEmpty()) {
+            root = value;
+            return;
+        }
+        Object parent = stack.get(stack.size() - 1);
+        if(parent instanceof JSONObject) {
+            ((JSONObject)parent).put(keys.get(keys.size() - 1), value);
+        }
+        else {
+            ((JSONArray)parent).add(value);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
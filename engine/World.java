@@ -6,7 +6,7 @@ import engine.objects.PhysicsObject;
  * A class which contains the physical properties of the game world.
  *
  * @author Galen Savidge
- * @version 5/12/2020
+ * @version 6/12/2020
  */
 public class World {
     // Size of the world in pixels
@@ -14,6 +14,11 @@ public class World {
     static int height;
     static int grid_size;
 
+    // Size in pixels of the area around the camera in which objects may exist at once, or 0 if objects may exist
+    // anywhere. Spatial grids are sized to this area and wrap around beyond it
+    static int active_width;
+    static int active_height;
+
     // Ratio between world coordinates and map coordinates (e.g. when using LevelParser)
     public static int grid_scaling_factor = 1;
 
@@ -34,6 +39,22 @@ public class World {
         return World.grid_size;
     }
 
+    /**
+     * @return The width of the area in which objects may exist at once, e.g. the regions kept loaded by {@link
+     * LevelStreamer}. The size of the world if the whole level exists at once.
+     */
+    public static int getActiveWidth() {
+        return active_width > 0 ? Math.min(active_width, width) : width;
+    }
+
+    /**
+     * @return The height of the area in which objects may exist at once.
+     * @see #getActiveWidth()
+     */
+    public static int getActiveHeight() {
+        return active_height > 0 ? Math.min(active_height, height) : height;
+    }
+
 
     /* World grid */
 
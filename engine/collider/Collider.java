@@ -25,12 +25,28 @@ public class Collider {
     /* Collider instance variables */
 
     private PhysicsObject object; // The object this collider is attached to
-    private Vector2 position; // The coordinates of the top left corner of this collider in the game world
+    Vector2 position; // The coordinates of the top left corner of this collider in the game world
     private Vector2 center; // The center of the collider's bounding box; can also be manually set
     private final ArrayList<Vector2> local_vertices = new ArrayList<>(); // Vertices in local space
+    private double min_x, min_y, max_x, max_y; // Bounding box of the vertices in local space
     final ArrayList<Vector2> zone_check_points = new ArrayList<>(); // Points used to check which zone this is in
+    int grid_id = -1; // Index of this collider in ColliderGrid, or -1 if it has not been added
+    int[] zones = new int[4]; // Indices of the ColliderGrid zones this collider is bucketed in
+    int num_zones = 0;
+    boolean grid_dirty = false; // True if this collider is waiting for a deferred ColliderGrid update
+    boolean removal_pending = false; // True if this collider is waiting to be removed from ColliderGrid
+    boolean baked = false; // True if this collider is part of the StaticGeometry mesh instead of ColliderGrid
+    int[] mesh_edges = null; // Slots of this collider's edges in StaticGeometry, or null if it has none there
+    boolean mesh_changed = false; // True if this collider's StaticGeometry edges are waiting to be updated
+    private final ArrayList<Collider> nearby = new ArrayList<>(); // Reused buffer for ColliderGrid queries
     private boolean enabled = true; // If false, does not check for or return collisions with other Colliders
 
+    // World space geometry, recalculated only after the collider moves
+    private boolean world_dirty = true;
+    private double[] world_vertices; // Packed as x, y pairs
+    private double[] world_edges; // Packed line segments running clockwise; see Line.pack
+    private double[] world_normals; // Right-hand unit normals of world_edges, packed as x, y pairs
+
     /**
      * If true, the {@link Collider} draws its vertices in its draw step.
      */
@@ -83,6 +99,23 @@ public class Collider {
             Collections.reverse(this.local_vertices);
         }
 
+        // Allocate world space geometry
+        this.world_vertices = new double[2*this.local_vertices.size()];
+        this.world_edges = new double[Line.packed_size*this.local_vertices.size()];
+        this.world_normals = new double[2*this.local_vertices.size()];
+
+        // Calculate bounding box
+        this.min_x = Double.MAX_VALUE;
+        this.min_y = Double.MAX_VALUE;
+        this.max_x = -Double.MAX_VALUE;
+        this.max_y = -Double.MAX_VALUE;
+        for(Vector2 vertex : this.local_vertices) {
+            this.min_x = Math.min(this.min_x, vertex.x);
+            this.min_y = Math.min(this.min_y, vertex.y);
+            this.max_x = Math.max(this.max_x, vertex.x);
+            this.max_y = Math.max(this.max_y, vertex.y);
+        }
+
         // Get zone check points list
         this.zone_check_points.add(this.center.copy());
         this.position = Vector2.zero();
@@ -153,7 +186,11 @@ public class Collider {
      * Removes this collider from the global colliders list and removes its reference to the attached PhysicsObject.
      */
     public void delete() {
-        ColliderGrid.remove(this);
+        ColliderGrid.release(this);
+        if(baked) {
+            baked = false;
+            StaticGeometry.invalidate(this);
+        }
         this.object = null;
     }
 
@@ -164,7 +201,12 @@ public class Collider {
     public void disable() {
         if(this.enabled) {
             this.enabled = false;
-            ColliderGrid.remove(this);
+            if(baked) {
+                StaticGeometry.invalidate(this);
+            }
+            else {
+                ColliderGrid.remove(this);
+            }
         }
     }
 
@@ -176,7 +218,12 @@ public class Collider {
     public void enable() {
         if(!this.enabled) {
             this.enabled = true;
-            ColliderGrid.add(this);
+            if(baked) {
+                StaticGeometry.invalidate(this);
+            }
+            else {
+                ColliderGrid.add(this);
+            }
         }
     }
 
@@ -198,14 +245,20 @@ public class Collider {
     }
 
     /**
-     * Moves the {@link Collider} and
+     * Moves the {@link Collider} and updates its zones in {@link ColliderGrid} if it is enabled. Moving a collider baked
+     * into {@link StaticGeometry} moves its edges in the mesh.
      *
      * @param position The position of the top left corner of the {@link Collider}'s bounding box in world space.
      */
     public void setPosition(Vector2 position) {
-        ColliderGrid.remove(this);
-        this.position = position.copy();
-        ColliderGrid.add(this);
+        this.position.set(position);
+        world_dirty = true;
+        if(baked) {
+            StaticGeometry.invalidate(this);
+        }
+        else if(enabled) {
+            ColliderGrid.update(this);
+        }
     }
 
     /**
@@ -256,13 +309,74 @@ public class Collider {
         return this.enabled;
     }
 
+    /**
+     * @return True iff this {@link Collider} has been baked into {@link StaticGeometry}.
+     */
+    public boolean isBaked() {
+        return this.baked;
+    }
+
+    /**
+     * Gets the world space bounding box of this {@link Collider}, extended to cover the whole of a sweep across {@code
+     * delta_position}.
+     *
+     * @param delta_position Change in position to cover, or {@code null} for the bounding box at the current position.
+     * @param out            An array of at least four elements to fill with {@code {min_x, min_y, max_x, max_y}}.
+     * @return {@code out}.
+     */
+    public double[] getBounds(Vector2 delta_position, double[] out) {
+        double dx = delta_position == null ? 0 : delta_position.x;
+        double dy = delta_position == null ? 0 : delta_position.y;
+        out[0] = position.x + min_x + Math.min(0, dx);
+        out[1] = position.y + min_y + Math.min(0, dy);
+        out[2] = position.x + max_x + Math.max(0, dx);
+        out[3] = position.y + max_y + Math.max(0, dy);
+        return out;
+    }
+
+    /**
+     * @return The number of {@link Collider} pairs considered by {@link #check} and {@link #sweep} since the last call
+     * to {@link #resetBroadPhaseCounters}.
+     */
+    public static long getPairsTested() {
+        long tested = 0;
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            tested += scratch.pairs_tested;
+        }
+        return tested;
+    }
+
+    /**
+     * @return The number of {@link Collider} pairs that {@link #check} and {@link #sweep} skipped without testing edges
+     * because their bounding boxes did not overlap, since the last call to {@link #resetBroadPhaseCounters}.
+     */
+    public static long getPairsRejected() {
+        long rejected = 0;
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            rejected += scratch.pairs_rejected;
+        }
+        return rejected;
+    }
+
+    /**
+     * Resets the broad phase counters of both {@link Collider} and {@link StaticGeometry}.
+     */
+    public static void resetBroadPhaseCounters() {
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            scratch.pairs_tested = 0;
+            scratch.pairs_rejected = 0;
+        }
+        StaticGeometry.resetCounters();
+    }
+
     /**
      * @return A list of the positions of the collider's vertices in global space.
      */
     public ArrayList<Vector2> getVertices() {
-        ArrayList<Vector2> vertices = new ArrayList<>();
-        for(Vector2 v : local_vertices) {
-            vertices.add(v.sum(position));
+        updateWorldGeometry();
+        ArrayList<Vector2> vertices = new ArrayList<>(local_vertices.size());
+        for(int v = 0;v < local_vertices.size();v++) {
+            vertices.add(new Vector2(world_vertices[2*v], world_vertices[2*v + 1]));
         }
         return vertices;
     }
@@ -272,18 +386,18 @@ public class Collider {
      * @return A list of the line segments connecting the collider's vertices running clockwise.
      */
     public ArrayList<Line> getEdges(boolean global) {
-        ArrayList<Vector2> vertices;
+        ArrayList<Line> lines = new ArrayList<>();
         if(global) {
-            vertices = this.getVertices();
-        }
-        else {
-            vertices = this.local_vertices;
+            updateWorldGeometry();
+            for(int e = 0;e < local_vertices.size();e++) {
+                lines.add(new Line(world_edges, e*Line.packed_size));
+            }
+            return lines;
         }
-        ArrayList<Line> lines = new ArrayList<>();
-        for(int i = 0;i < vertices.size();i++) {
+        for(int i = 0;i < local_vertices.size();i++) {
             int j = i - 1;
-            if(j < 0) j += vertices.size();
-            lines.add(new Line(vertices.get(j), vertices.get(i)));
+            if(j < 0) j += local_vertices.size();
+            lines.add(new Line(local_vertices.get(j), local_vertices.get(i)));
         }
         return lines;
     }
@@ -296,6 +410,32 @@ public class Collider {
         return getEdges(true);
     }
 
+    /**
+     * @return The number of vertices, which is also the number of edges.
+     */
+    int numVertices() {
+        return local_vertices.size();
+    }
+
+    /**
+     * @return The vertices in world space packed as x, y pairs. The array is owned by this {@link Collider} and must
+     * not be modified.
+     */
+    double[] worldVertices() {
+        updateWorldGeometry();
+        return world_vertices;
+    }
+
+    /**
+     * @return The edges in world space as packed line segments running clockwise. The array is owned by this {@link
+     * Collider} and must not be modified.
+     * @see Line#pack
+     */
+    double[] worldEdges() {
+        updateWorldGeometry();
+        return world_edges;
+    }
+
 
     /* Collision checking */
 
@@ -312,25 +452,27 @@ public class Collider {
             return objects;
         }
 
-        ArrayList<Collider> colliders = ColliderGrid.inNeighboringZones(position);
+        CollisionScratch scratch = CollisionScratch.get();
+        ArrayList<Collider> colliders = ColliderGrid.inNeighboringZones(position, 1, nearby, scratch);
         setPosition(position);
 
-        for(Line edge : this.getEdges()) {
-            for(Collider other : colliders) {
-                if(other != this && filter.test(other.object)) {
-                    boolean intersects = false;
-                    for(Line other_edge : other.getEdges()) {
-                        if(edge.intersection(other_edge) != null) {
-                            intersects = true;
-                            break;
-                        }
-                    }
-                    if(intersects) {
-                        objects.add(other.object);
-                    }
-                }
+        for(Collider other : colliders) {
+            if(other == this || !filter.test(other.object)) {
+                continue;
+            }
+
+            // Skip the edge tests if the bounding boxes do not overlap
+            scratch.pairs_tested++;
+            if(!boundsOverlap(other, 0, 0)) {
+                scratch.pairs_rejected++;
+                continue;
+            }
+
+            if(edgesIntersect(other, scratch.hit_point)) {
+                objects.add(other.object);
             }
         }
+        StaticGeometry.check(this, filter, objects, scratch);
         return objects;
     }
 
@@ -355,38 +497,104 @@ public class Collider {
      */
     public void rayCheck(PhysicsObject calling_obj, Collision collision, Line ray, boolean reversed,
                          Predicate<Intersection> filter) {
-        ArrayList<Line> edges = this.getEdges();
-        for(Line edge : edges) {
-            Vector2 intersection_point = ray.intersection(edge);
-            if(intersection_point != null) {
-                PhysicsObject collided_with = this.object;
-                if(reversed) {
-                    collided_with = calling_obj;
-                }
-                Intersection i = new Intersection(collided_with, intersection_point, edge, ray, reversed);
-                if(filter.test(i)) {
-                    collision.addIntersection(i);
+        rayCheck(calling_obj, collision, ray, reversed, filter, CollisionScratch.get().hit_point);
+    }
+
+    /**
+     * Same as {@link #rayCheck(PhysicsObject, Collision, Line, boolean, Predicate)} using {@code hit_point} to hold
+     * intersection points.
+     */
+    void rayCheck(PhysicsObject calling_obj, Collision collision, Line ray, boolean reversed,
+                  Predicate<Intersection> filter, Vector2 hit_point) {
+        updateWorldGeometry();
+        for(int e = 0;e < local_vertices.size();e++) {
+            if(ray.intersection(world_edges, e*Line.packed_size, hit_point)) {
+                addIntersection(calling_obj, collision, e, ray, reversed, filter, hit_point);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #rayCheck(PhysicsObject, Collision, Line, boolean, Predicate)} for a ray stored as a packed line
+     * segment, using {@code hit_point} to hold intersection points. Only allocates when an intersection is found.
+     *
+     * @see Line#pack
+     */
+    void rayCheck(PhysicsObject calling_obj, Collision collision, double[] ray, int offset, boolean reversed,
+                  Predicate<Intersection> filter, Vector2 hit_point) {
+        updateWorldGeometry();
+        Line ray_line = null;
+        for(int e = 0;e < local_vertices.size();e++) {
+            if(Line.intersection(ray, offset, world_edges, e*Line.packed_size, hit_point)) {
+                if(ray_line == null) {
+                    ray_line = new Line(ray, offset);
                 }
+                addIntersection(calling_obj, collision, e, ray_line, reversed, filter, hit_point);
             }
         }
     }
 
     /**
-     * Ray-casts along a given line and returns all intersections found.
+     * Ray-casts along a given line and returns all intersections found. Only checks the {@link ColliderGrid} zones and
+     * {@link StaticGeometry} cells that the line passes through. Lines that extend infinitely are cut off one zone past
+     * the edge of the world.
      *
      * @param ray    A line, ray, or line segment. Treats {@code ray.p1} as the origin of the ray-cast.
      * @param filter A condition defining which intersections to return.
      * @return A {@link Collision} object containing all {@link Intersection}s found.
      */
     public static Collision rayCast(Line ray, Predicate<Intersection> filter) {
-        ArrayList<Collider> colliders = ColliderGrid.all();
+        Collision collision = new Collision();
+        castRay(ray, filter, collision, false);
+        return collision;
+    }
 
+    /**
+     * Ray-casts along a given line and returns the intersection closest to {@code ray.p1}. Stops walking the line as
+     * soon as no closer intersection is possible, so a hit near the origin costs little regardless of the length of
+     * the line.
+     *
+     * @param ray    A line, ray, or line segment. Treats {@code ray.p1} as the origin of the ray-cast.
+     * @param filter A condition defining which intersections to consider.
+     * @return The closest {@link Intersection}, or {@code null} if none was found.
+     * @see #rayCast(Line, Predicate)
+     */
+    public static Intersection rayCastClosest(Line ray, Predicate<Intersection> filter) {
         Collision collision = new Collision();
-        for(Collider collider : colliders) {
-            collider.rayCheck(null, collision, ray, false, filter);
+        castRay(ray, filter, collision, true);
+        return collision.popClosestIntersection();
+    }
+
+    /**
+     * Ray-casts along each line in {@code rays}. Equivalent to calling {@link #rayCast(Line, Predicate)} once per line.
+     *
+     * @return A {@link Collision} for each line in {@code rays}, in the same order.
+     */
+    public static Collision[] rayCast(Line[] rays, Predicate<Intersection> filter) {
+        Collision[] collisions = new Collision[rays.length];
+        for(int r = 0;r < rays.length;r++) {
+            collisions[r] = new Collision();
+            castRay(rays[r], filter, collisions[r], false);
         }
+        return collisions;
+    }
 
-        return collision;
+    /**
+     * Ray-casts along each line in {@code rays}. Equivalent to calling {@link #rayCastClosest(Line, Predicate)} once
+     * per line.
+     *
+     * @return The closest {@link Intersection} for each line in {@code rays}, in the same order. Elements are {@code
+     * null} for lines that hit nothing.
+     */
+    public static Intersection[] rayCastClosest(Line[] rays, Predicate<Intersection> filter) {
+        Intersection[] closest = new Intersection[rays.length];
+        Collision collision = new Collision();
+        for(int r = 0;r < rays.length;r++) {
+            castRay(rays[r], filter, collision, true);
+            closest[r] = collision.popClosestIntersection();
+            collision.clear();
+        }
+        return closest;
     }
 
     /**
@@ -404,27 +612,43 @@ public class Collider {
         }
 
         setPosition(position);
-        Vector2 reverse_delta_position = delta_position.multiply(-1);
+        updateWorldGeometry();
 
-        ArrayList<Collider> nearby = ColliderGrid.inNeighboringZones(this.position);
+        double dx = delta_position.x, dy = delta_position.y;
+        CollisionScratch scratch = CollisionScratch.get();
+        double[] sweep_ray = scratch.sweep_ray;
+        Vector2 hit_point = scratch.hit_point;
+        ColliderGrid.inNeighboringZones(this.position, 1, nearby, scratch);
 
         for(Collider other : nearby) {
             if(other == this) {
                 continue;
             }
 
+            // Skip the ray-casts if other is nowhere near the path of the sweep
+            scratch.pairs_tested++;
+            if(!boundsOverlap(other, delta_position.x, delta_position.y)) {
+                scratch.pairs_rejected++;
+                continue;
+            }
+
             // Check this against other
-            for(Vector2 vertex : this.getVertices()) {
-                Line ray = new Line(vertex, vertex.sum(delta_position));
-                other.rayCheck(this.object, c, ray, false, filter);
+            for(int v = 0;v < local_vertices.size();v++) {
+                double x = world_vertices[2*v], y = world_vertices[2*v + 1];
+                Line.pack(x, y, x + dx, y + dy, sweep_ray, 0);
+                other.rayCheck(this.object, c, sweep_ray, 0, false, filter, hit_point);
             }
 
             // Check other against this
-            for(Vector2 vertex : other.getVertices()) {
-                Line ray = new Line(vertex, vertex.sum(reverse_delta_position));
-                this.rayCheck(other.object, c, ray, true, filter);
+            double[] other_vertices = other.worldVertices();
+            for(int v = 0;v < other.numVertices();v++) {
+                double x = other_vertices[2*v], y = other_vertices[2*v + 1];
+                Line.pack(x, y, x - dx, y - dy, sweep_ray, 0);
+                this.rayCheck(other.object, c, sweep_ray, 0, true, filter, hit_point);
             }
         }
+
+        StaticGeometry.sweep(this, delta_position, c, filter, scratch);
         return c;
     }
 
@@ -463,6 +687,124 @@ public class Collider {
 
     /* Helper functions */
 
+    /**
+     * Walks the zones crossed by {@code ray} and adds intersections with nearby colliders and static geometry to
+     * {@code collision}. Colliders are looked up in the zones around each crossed zone, the same area checked by
+     * {@link #check} and {@link #sweep}. If {@code closest_only} is true, stops once an intersection is found that is
+     * closer to {@code ray.p1} than any zone not yet visited.
+     */
+    private static void castRay(Line ray, Predicate<Intersection> filter, Collision collision, boolean closest_only) {
+        CollisionScratch scratch = CollisionScratch.get();
+        GridRay ray_walk = scratch.ray_walk;
+        ArrayList<Collider> ray_colliders = scratch.ray_colliders;
+        int zone_size = ColliderGrid.getZoneSize();
+        if(!ray_walk.start(ray, zone_size, ColliderGrid.getGridWidth(), ColliderGrid.getGridHeight())) {
+            return;
+        }
+
+        // Intersections are only ordered along the line if it starts at p1
+        closest_only = closest_only && ray.p1_endpoint;
+        double length = ray.length();
+
+        ColliderGrid.beginQuery(scratch);
+        StaticGeometry.beginRayCast(scratch);
+        do {
+            ray_colliders.clear();
+            ColliderGrid.addNearZone(ray_walk.cell_x, ray_walk.cell_y, 1, ray_colliders, scratch);
+            for(Collider c : ray_colliders) {
+                c.rayCheck(null, collision, ray, false, filter, scratch.hit_point);
+            }
+            StaticGeometry.rayCheckCell(ray_walk.cell_x, ray_walk.cell_y, collision, ray, filter, scratch);
+
+            if(closest_only) {
+                Intersection closest = collision.peekClosestIntersection();
+                if(closest != null && closest.distance <= ray_walk.t_exit*length) {
+                    break;
+                }
+            }
+        } while(ray_walk.next());
+    }
+
+    /**
+     * @return True iff the bounding box of {@code other} overlaps the bounding box of this {@link Collider} swept
+     * across {@code <dx, dy>}. Boxes within {@link Misc#delta} count as overlapping, matching the tolerance of {@link
+     * Line#intersection}.
+     */
+    private boolean boundsOverlap(Collider other, double dx, double dy) {
+        return position.x + min_x + Math.min(0, dx) <= other.position.x + other.max_x + Misc.delta
+                && position.x + max_x + Math.max(0, dx) >= other.position.x + other.min_x - Misc.delta
+                && position.y + min_y + Math.min(0, dy) <= other.position.y + other.max_y + Misc.delta
+                && position.y + max_y + Math.max(0, dy) >= other.position.y + other.min_y - Misc.delta;
+    }
+
+    /**
+     * @return True iff any edge of this {@link Collider} intersects any edge of {@code other}.
+     */
+    private boolean edgesIntersect(Collider other, Vector2 hit_point) {
+        updateWorldGeometry();
+        double[] other_edges = other.worldEdges();
+        for(int e = 0;e < local_vertices.size();e++) {
+            for(int f = 0;f < other.numVertices();f++) {
+                if(Line.intersection(world_edges, e*Line.packed_size, other_edges, f*Line.packed_size, hit_point)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates an {@link Intersection} at {@code hit_point} on edge {@code e} and adds it to {@code collision} if it
+     * passes {@code filter}.
+     */
+    private void addIntersection(PhysicsObject calling_obj, Collision collision, int e, Line ray, boolean reversed,
+                                 Predicate<Intersection> filter, Vector2 hit_point) {
+        PhysicsObject collided_with = this.object;
+        if(reversed) {
+            collided_with = calling_obj;
+        }
+        Intersection i = new Intersection(collided_with, hit_point, new Line(world_edges, e*Line.packed_size), ray,
+                reversed, world_normals[2*e], world_normals[2*e + 1]);
+        if(filter.test(i)) {
+            collision.addIntersection(i);
+        }
+    }
+
+    /**
+     * Recalculates {@link #world_vertices}, {@link #world_edges}, and {@link #world_normals} if the collider has moved
+     * since they were last calculated.
+     */
+    private void updateWorldGeometry() {
+        if(!world_dirty) {
+            return;
+        }
+        int n = local_vertices.size();
+        for(int v = 0;v < n;v++) {
+            Vector2 vertex = local_vertices.get(v);
+            world_vertices[2*v] = vertex.x + position.x;
+            world_vertices[2*v + 1] = vertex.y + position.y;
+        }
+        for(int i = 0;i < n;i++) {
+            int j = i - 1;
+            if(j < 0) j += n;
+            double x1 = world_vertices[2*j], y1 = world_vertices[2*j + 1];
+            double x2 = world_vertices[2*i], y2 = world_vertices[2*i + 1];
+            Line.pack(x1, y1, x2, y2, world_edges, i*Line.packed_size);
+
+            // Same as Line.RHNormal
+            double length = Math.sqrt((y2 - y1)*(y2 - y1) + (x1 - x2)*(x1 - x2));
+            if(length == 0) {
+                world_normals[2*i] = 0;
+                world_normals[2*i + 1] = 0;
+            }
+            else {
+                world_normals[2*i] = (y2 - y1)*(1.0/length);
+                world_normals[2*i + 1] = (x1 - x2)*(1.0/length);
+            }
+        }
+        world_dirty = false;
+    }
+
     /**
      * @param vertices A list of vertices in either clockwise or counter-clockwise order.
      * @return {@code true} if the vertices are in counter-clockwise order.
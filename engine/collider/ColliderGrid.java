@@ -4,16 +4,72 @@ import engine.World;
 import engine.util.Vector2;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
+ * A spatial hash used to find the {@link Collider} objects near a point in the world. The world is divided into square
+ * zones; each zone stores the integer IDs of the colliders that overlap it in a dense bucket. Queries mark colliders
+ * with a generation stamp instead of comparing lists, so a collider found in several zones is returned once at no
+ * extra cost.
+ * <p>
+ * Each {@link Collider} remembers the zones it occupies. When a collider moves, {@link #update} recomputes that set
+ * and only touches the buckets that actually changed, which for most movement is none of them. With {@link
+ * #setDeferredUpdates} enabled, moving colliders are instead queued and re-bucketed once by {@link #flush}, which
+ * {@link engine.Game} calls at the end of each update pass.
+ * <p>
+ * Between {@link #beginParallelUpdate} and {@link #endParallelUpdate} the buckets are read-only: adds, removes, and
+ * moves are queued and committed in order when the parallel pass ends, so any number of threads may query the grid at
+ * once. {@link #findIslands} splits the grid into groups of zones whose colliders can be updated independently.
+ * <p>
+ * The buckets only cover {@link World#getActiveWidth} by {@link World#getActiveHeight}, and zones further apart than
+ * that share buckets, wrapping around like a torus. When only part of a level exists at once, memory then depends on
+ * the size of that part rather than on the size of the level. Colliders that share a bucket without being near each
+ * other are returned by queries but never collide, since {@link Collider} tests the actual shapes.
+ *
  * @author Galen Savidge
- * @version 6/1/2020
+ * @version 6/12/2020
  */
 public class ColliderGrid {
 
     private static final int zone_size_in_grid = 2; // Zone size in world grid squares
+    private static final int initial_bucket_size = 4;
     private static int zone_size; // Zone size in world pixels
-    private static ArrayList<Collider>[][] colliders; // A list of all colliders that exist as a 2D array of zones
+    private static int grid_width; // Width of the world in zones
+    private static int grid_height; // Height of the world in zones
+    private static int window_width; // Width of the bucket array in zones; zones wrap around past this
+    private static int window_height; // Height of the bucket array in zones
+
+    // Per-zone dense buckets of collider IDs, indexed by zone_x%window_width*window_height + zone_y%window_height
+    private static int[][] buckets;
+    private static int[] bucket_sizes;
+    private static int[] bucket_stamps; // Used to avoid adding a collider to the same zone twice
+    private static int add_generation = 0;
+    private static int[] new_zones = new int[16]; // Scratch list of zones used when re-bucketing
+    private static int num_new_zones = 0;
+
+    // Deferred re-bucketing
+    private static boolean deferred_updates = false;
+    private static final ArrayList<Collider> dirty = new ArrayList<>();
+
+    // Parallel updates
+    private static final int add_op = 0;
+    private static final int remove_op = 1;
+    private static final int release_op = 2;
+    private static final int update_op = 3;
+    private static final int island_margin = 2; // Zones between colliders in different islands
+    private static volatile boolean parallel = false;
+    private static final ArrayList<Collider> pending = new ArrayList<>(); // Grid changes queued during a parallel pass
+    private static int[] pending_ops = new int[16];
+    private static long[] pending_keys = new long[16]; // Batch index of the object that made each change, then arrival
+    private static final ThreadLocal<int[]> updating_index = ThreadLocal.withInitial(() -> new int[1]);
+    private static int[] island_parents = new int[0]; // Union-find forest over zones
+
+    // Colliders indexed by ID
+    private static Collider[] colliders = new Collider[0];
+    private static boolean[] in_grid = new boolean[0]; // True iff the collider with this ID is in at least one zone
+    private static int[] free_ids = new int[0];
+    private static int num_free_ids = 0;
+    private static int next_id = 0;
 
     /**
      * Initializes the data structure used to check which {@link Collider} instances lie within a specific area. Should
@@ -26,15 +82,36 @@ public class ColliderGrid {
             throw new ExceptionInInitializerError("World not initialized!");
         }
 
-        zone_size = zone_size_in_grid*World.getGridSize();
-        int grid_width = World.getWidth()/zone_size + 1;
-        int grid_height = World.getHeight()/zone_size + 1;
-        colliders = new ArrayList[grid_width][grid_height];
-        for(int i = 0;i < grid_width;i++) {
-            for(int j = 0;j < grid_height;j++) {
-                colliders[i][j] = new ArrayList<>();
+        // Invalidate the IDs of colliders left over from the previous grid
+        for(int i = 0;i < next_id;i++) {
+            if(colliders[i] != null) {
+                colliders[i].grid_id = -1;
             }
         }
+
+        zone_size = zone_size_in_grid*World.getGridSize();
+        grid_width = World.getWidth()/zone_size + 1;
+        grid_height = World.getHeight()/zone_size + 1;
+        window_width = Math.min(grid_width, World.getActiveWidth()/zone_size + 1);
+        window_height = Math.min(grid_height, World.getActiveHeight()/zone_size + 1);
+        int num_zones = window_width*window_height;
+        buckets = new int[num_zones][initial_bucket_size];
+        bucket_sizes = new int[num_zones];
+        bucket_stamps = new int[num_zones];
+        add_generation = 0;
+
+        island_parents = new int[num_zones];
+
+        colliders = new Collider[64];
+        in_grid = new boolean[64];
+        free_ids = new int[64];
+        num_free_ids = 0;
+        next_id = 0;
+
+        dirty.clear();
+        pending.clear();
+
+        StaticGeometry.init();
     }
 
 
@@ -44,49 +121,150 @@ public class ColliderGrid {
         return zone_size;
     }
 
+    /**
+     * @return The width of the world in zones.
+     */
+    static int getGridWidth() {
+        return grid_width;
+    }
+
+    /**
+     * @return The height of the world in zones.
+     */
+    static int getGridHeight() {
+        return grid_height;
+    }
+
+    /**
+     * Sets whether moving colliders are re-bucketed immediately or queued until {@link #flush} is called. While
+     * deferred, other colliders may find a moving collider in the zones it occupied at the start of the step. Colliders
+     * always use their current position for their own collision checks. Defaults to {@code false}.
+     */
+    public static void setDeferredUpdates(boolean deferred) {
+        if(deferred_updates && !deferred) {
+            flush();
+        }
+        deferred_updates = deferred;
+    }
+
 
     /* Collider zone functions */
 
     /**
-     * Adds {@code c} to the collider grid.
+     * Adds {@code c} to the collider grid. Assigns {@code c} an ID if it does not have one yet. Does nothing if {@code
+     * c} is already in the grid.
      *
      * @see #inZone
      */
     public static void add(Collider c) {
-        for(Vector2 p : c.zone_check_points) {
-            int x = (int)((p.x + c.getPosition().x)/zone_size);
-            int y = (int)((p.y + c.getPosition().y)/zone_size);
-            int zone_x = Math.min(Math.max(0, x), colliders.length - 1);
-            int zone_y = Math.min(Math.max(0, y), colliders[0].length - 1);
-            if(!colliders[zone_x][zone_y].contains(c)) {
-                colliders[zone_x][zone_y].add(c);
-            }
+        if(parallel && defer(c, add_op)) {
+            return;
         }
+        if(c.grid_id < 0) {
+            assignID(c);
+        }
+        int id = c.grid_id;
+        if(in_grid[id]) {
+            return;
+        }
+
+        computeZones(c);
+        for(int i = 0;i < num_new_zones;i++) {
+            bucketAdd(new_zones[i], id);
+        }
+        setZones(c);
+        in_grid[id] = true;
     }
 
     /**
-     * Removes {@code c} from the collider grid.
+     * Removes {@code c} from the collider grid. {@code c} keeps its ID so that it can be re-added cheaply.
      *
      * @see #inZone
+     * @see #release
      */
     public static void remove(Collider c) {
-        for(Vector2 p : c.zone_check_points) {
-            int x = (int)((p.x + c.getPosition().x)/zone_size);
-            int y = (int)((p.y + c.getPosition().y)/zone_size);
-            int zone_x = Math.min(Math.max(0, x), colliders.length - 1);
-            int zone_y = Math.min(Math.max(0, y), colliders[0].length - 1);
-            colliders[zone_x][zone_y].remove(c);
+        if(parallel && defer(c, remove_op)) {
+            return;
+        }
+        int id = c.grid_id;
+        if(id < 0 || !in_grid[id]) {
+            return;
+        }
+
+        for(int i = 0;i < c.num_zones;i++) {
+            bucketRemove(c.zones[i], id);
+        }
+        c.num_zones = 0;
+        in_grid[id] = false;
+    }
+
+    /**
+     * Moves {@code c} to the zones matching its current position, adding it to the grid if it is not in it. Buckets
+     * are only modified for zones that {@code c} entered or left. If deferred updates are enabled and {@code c} is
+     * already in the grid, {@code c} is queued for the next {@link #flush} instead.
+     */
+    public static void update(Collider c) {
+        if(parallel && defer(c, update_op)) {
+            return;
+        }
+        if(c.grid_id < 0 || !in_grid[c.grid_id]) {
+            add(c);
+        }
+        else if(deferred_updates) {
+            if(!c.grid_dirty) {
+                c.grid_dirty = true;
+                dirty.add(c);
+            }
+        }
+        else {
+            rebucket(c);
+        }
+    }
+
+    /**
+     * Re-buckets all colliders that moved since the last call. Does nothing unless deferred updates are enabled.
+     *
+     * @see #setDeferredUpdates
+     */
+    public static void flush() {
+        for(Collider c : dirty) {
+            c.grid_dirty = false;
+            if(c.grid_id >= 0 && in_grid[c.grid_id]) {
+                rebucket(c);
+            }
         }
+        dirty.clear();
     }
 
     /**
-     * @return The list of all {@link Collider} objects in the grid.
+     * Removes {@code c} from the collider grid and frees its ID. Should be called when {@code c} is deleted.
+     */
+    public static void release(Collider c) {
+        if(parallel && defer(c, release_op)) {
+            return;
+        }
+        remove(c);
+        int id = c.grid_id;
+        if(id < 0) {
+            return;
+        }
+
+        colliders[id] = null;
+        if(num_free_ids == free_ids.length) {
+            free_ids = grow(free_ids);
+        }
+        free_ids[num_free_ids++] = id;
+        c.grid_id = -1;
+    }
+
+    /**
+     * @return The list of all {@link Collider} objects in the grid. Each collider appears once.
      */
     public static ArrayList<Collider> all() {
         ArrayList<Collider> all = new ArrayList<>();
-        for(ArrayList<Collider>[] collider : colliders) {
-            for(ArrayList<Collider> colliderArrayList : collider) {
-                all.addAll(colliderArrayList);
+        for(int id = 0;id < next_id;id++) {
+            if(in_grid[id]) {
+                all.add(colliders[id]);
             }
         }
         return all;
@@ -96,39 +274,98 @@ public class ColliderGrid {
      * @return The colliders in zone {@code (x, y)} of the collider grid.
      */
     public static ArrayList<Collider> inZone(int x, int y) {
-        if(x >= 0 && x < colliders.length && y >= 0 && y < colliders[0].length) {
-            return new ArrayList<>(colliders[x][y]);
-        }
-        else {
-            return new ArrayList<>();
+        ArrayList<Collider> zone_colliders = new ArrayList<>();
+        if(x >= 0 && x < grid_width && y >= 0 && y < grid_height) {
+            int zone = bucketIndex(x, y);
+            int[] bucket = buckets[zone];
+            for(int i = 0;i < bucket_sizes[zone];i++) {
+                zone_colliders.add(colliders[bucket[i]]);
+            }
         }
+        return zone_colliders;
     }
 
     /**
-     * Returns a list of {@link Collider} objects near {@code position}. Objects returned lie in the same zone as or
-     * neighboring zones to {@code position}.
+     * Fills {@code out} with the {@link Collider} objects near {@code position}. Objects returned lie in the same zone
+     * as or neighboring zones to {@code position}. Each collider is added at most once. Does not allocate unless {@code
+     * out} needs to grow.
      *
      * @param distance The number of zones away in every direction (including diagonals) to check. The zones checked
      *                 form a square with {@code 2*distance + 1} grid squares on each side, e.g. with {@code distance =
      *                 1} the area checked will be a 3x3 area of grid squares with {@code position} in its center
      *                 square.
+     * @param out      The list to fill. Cleared before any colliders are added.
+     * @return {@code out}.
      */
-    public static ArrayList<Collider> inNeighboringZones(Vector2 position, int distance) {
+    public static ArrayList<Collider> inNeighboringZones(Vector2 position, int distance, ArrayList<Collider> out) {
+        return inNeighboringZones(position, distance, out, CollisionScratch.get());
+    }
 
-        int zone_x = (int)(position.x/ColliderGrid.getZoneSize());
-        int zone_y = (int)(position.y/ColliderGrid.getZoneSize());
+    /**
+     * Same as {@link #inNeighboringZones(Vector2, int, ArrayList)} using the given per-thread scratch buffers.
+     */
+    static ArrayList<Collider> inNeighboringZones(Vector2 position, int distance, ArrayList<Collider> out,
+                                                  CollisionScratch scratch) {
+        out.clear();
+        beginQuery(scratch);
+        addNearZone((int)(position.x/zone_size), (int)(position.y/zone_size), distance, out, scratch);
+        return out;
+    }
 
-        ArrayList<Collider> colliders = new ArrayList<>();
+    /**
+     * Starts a query made of several calls to {@link #addNearZone}. Colliders found by one call are not returned again
+     * by later calls until the next query on the same thread starts.
+     */
+    static void beginQuery(CollisionScratch scratch) {
+        if(scratch.query_stamps.length < colliders.length) {
+            scratch.query_stamps = new int[colliders.length];
+            scratch.query_generation = 0;
+        }
+        scratch.query_generation = nextGeneration(scratch.query_generation, scratch.query_stamps);
+    }
+
+    /**
+     * Adds the {@link Collider} objects in zone {@code (zone_x, zone_y)} and the zones up to {@code distance} zones
+     * away from it to {@code out}, skipping colliders already found since the last call to {@link #beginQuery}. Zones
+     * outside of the world and colliders waiting to be removed are ignored.
+     */
+    static void addNearZone(int zone_x, int zone_y, int distance, ArrayList<Collider> out, CollisionScratch scratch) {
+        int[] query_stamps = scratch.query_stamps;
+        int query_generation = scratch.query_generation;
+        int min_x = Math.max(0, zone_x - distance), max_x = Math.min(grid_width - 1, zone_x + distance);
+        int min_y = Math.max(0, zone_y - distance), max_y = Math.min(grid_height - 1, zone_y + distance);
+        max_x = Math.min(max_x, min_x + window_width - 1); // Visit each bucket once
+        max_y = Math.min(max_y, min_y + window_height - 1);
 
-        for(int i = -distance;i <= distance;i++) {
-            for(int j = -distance;j <= distance;j++) {
-                ArrayList<Collider> zone = ColliderGrid.inZone(zone_x + i, zone_y + j);
-                zone.removeAll(colliders);
-                colliders.addAll(zone);
+        for(int x = min_x;x <= max_x;x++) {
+            for(int y = min_y;y <= max_y;y++) {
+                int zone = bucketIndex(x, y);
+                int[] bucket = buckets[zone];
+                for(int i = 0;i < bucket_sizes[zone];i++) {
+                    int id = bucket[i];
+                    if(query_stamps[id] != query_generation) {
+                        query_stamps[id] = query_generation;
+                        if(!colliders[id].removal_pending) {
+                            out.add(colliders[id]);
+                        }
+                    }
+                }
             }
         }
+    }
 
-        return colliders;
+    /**
+     * Returns a list of {@link Collider} objects near {@code position}. Objects returned lie in the same zone as or
+     * neighboring zones to {@code position}.
+     *
+     * @param distance The number of zones away in every direction (including diagonals) to check. The zones checked
+     *                 form a square with {@code 2*distance + 1} grid squares on each side, e.g. with {@code distance =
+     *                 1} the area checked will be a 3x3 area of grid squares with {@code position} in its center
+     *                 square.
+     * @see #inNeighboringZones(Vector2, int, ArrayList)
+     */
+    public static ArrayList<Collider> inNeighboringZones(Vector2 position, int distance) {
+        return inNeighboringZones(position, distance, new ArrayList<>());
     }
 
     /**
@@ -139,4 +376,344 @@ public class ColliderGrid {
         return inNeighboringZones(position, 1);
     }
 
+
+    /* Parallel updates */
+
+    /**
+     * Makes the grid read-only so that it can be queried from several threads at once. Until {@link
+     * #endParallelUpdate} is called, calls to {@link #add}, {@link #remove}, {@link #release}, and {@link #update} are
+     * queued instead of applied, and removed colliders are left out of query results right away. Pending changes to
+     * {@link StaticGeometry} are applied first, and later ones wait until the parallel pass ends.
+     */
+    public static void beginParallelUpdate() {
+        StaticGeometry.applyChanges();
+        parallel = true;
+    }
+
+    /**
+     * Records which object of the parallel batch the calling thread is about to update. Grid changes made by the
+     * object are applied after those made by objects earlier in the batch, regardless of which thread ran first.
+     *
+     * @param index The index of the object in the batch.
+     */
+    public static void setUpdatingIndex(int index) {
+        updating_index.get()[0] = index;
+    }
+
+    /**
+     * Ends a parallel pass started by {@link #beginParallelUpdate} and applies the queued grid changes in batch order:
+     * the changes made by each object, in the order it made them, in the order the objects appear in the batch. The
+     * result does not depend on how the threads were scheduled. Must be called from the thread that began the pass
+     * once every other thread is done with the grid.
+     */
+    public static void endParallelUpdate() {
+        synchronized(pending) {
+            parallel = false;
+        }
+
+        // Changes made by one object were queued by one thread, so sorting by arrival keeps them in order
+        int n = pending.size();
+        Arrays.sort(pending_keys, 0, n);
+        for(int k = 0;k < n;k++) {
+            int i = (int)pending_keys[k];
+            Collider c = pending.get(i);
+            switch(pending_ops[i]) {
+                case add_op:
+                    c.removal_pending = false;
+                    add(c);
+                    break;
+                case remove_op:
+                    c.removal_pending = false;
+                    remove(c);
+                    break;
+                case release_op:
+                    c.removal_pending = false;
+                    release(c);
+                    break;
+                case update_op:
+                    update(c);
+                    break;
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return True iff a parallel pass is running.
+     */
+    static boolean inParallelUpdate() {
+        return parallel;
+    }
+
+    /**
+     * Groups the zones of the grid into islands. Two colliders are in the same island if their zones are within {@link
+     * #island_margin} zones of each other, directly or through a chain of other colliders. A collider only finds
+     * colliders within one zone of its position, so objects in different islands can be updated in parallel as long as
+     * they do not move more than one zone in a step. Zones that share a bucket are in the same island. Call {@link
+     * #islandOf} afterwards to look up the island of a collider. Must not be called during a parallel pass.
+     */
+    public static void findIslands() {
+        for(int z = 0;z < island_parents.length;z++) {
+            island_parents[z] = z;
+        }
+        for(int id = 0;id < next_id;id++) {
+            Collider c = colliders[id];
+            if(!in_grid[id] || c.num_zones == 0) {
+                continue;
+            }
+
+            // Bounding box of the collider's buckets, expanded by the margin and wrapped around if the grid wraps
+            int min_x = window_width, min_y = window_height, max_x = -1, max_y = -1;
+            for(int i = 0;i < c.num_zones;i++) {
+                int zone_x = c.zones[i]/window_height, zone_y = c.zones[i]%window_height;
+                min_x = Math.min(min_x, zone_x);
+                min_y = Math.min(min_y, zone_y);
+                max_x = Math.max(max_x, zone_x);
+                max_y = Math.max(max_y, zone_y);
+            }
+            min_x -= island_margin;
+            min_y -= island_margin;
+            max_x += island_margin;
+            max_y += island_margin;
+            if(window_width < grid_width) {
+                max_x = Math.min(max_x, min_x + window_width - 1);
+            }
+            else {
+                min_x = Math.max(0, min_x);
+                max_x = Math.min(grid_width - 1, max_x);
+            }
+            if(window_height < grid_height) {
+                max_y = Math.min(max_y, min_y + window_height - 1);
+            }
+            else {
+                min_y = Math.max(0, min_y);
+                max_y = Math.min(grid_height - 1, max_y);
+            }
+
+            int root = findRoot(c.zones[0]);
+            for(int x = min_x;x <= max_x;x++) {
+                for(int y = min_y;y <= max_y;y++) {
+                    int zone = Math.floorMod(x, window_width)*window_height + Math.floorMod(y, window_height);
+                    int other = findRoot(zone);
+                    if(other != root) {
+                        island_parents[other] = root;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return An identifier for the island containing {@code c} as of the last call to {@link #findIslands}, or
+     * {@code -1} if {@code c} is not in the grid.
+     */
+    public static int islandOf(Collider c) {
+        if(c == null || c.grid_id < 0 || !in_grid[c.grid_id] || c.num_zones == 0) {
+            return -1;
+        }
+        return findRoot(c.zones[0]);
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Queues a grid change to be applied by {@link #endParallelUpdate}.
+     *
+     * @return False if the parallel pass has already ended, in which case the change should be applied immediately.
+     */
+    private static boolean defer(Collider c, int op) {
+        synchronized(pending) {
+            if(!parallel) {
+                return false;
+            }
+            int n = pending.size();
+            if(n == pending_ops.length) {
+                pending_ops = grow(pending_ops);
+                pending_keys = Arrays.copyOf(pending_keys, pending_ops.length);
+            }
+            pending_ops[n] = op;
+            pending_keys[n] = (long)updating_index.get()[0] << 32 | n;
+            pending.add(c);
+            if(op != update_op) {
+                c.removal_pending = op != add_op;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return The root of the island containing {@code zone}. Compresses the path to the root as it goes.
+     */
+    private static int findRoot(int zone) {
+        int root = zone;
+        while(island_parents[root] != root) {
+            root = island_parents[root];
+        }
+        while(island_parents[zone] != root) {
+            int next = island_parents[zone];
+            island_parents[zone] = root;
+            zone = next;
+        }
+        return root;
+    }
+
+    /**
+     * Moves {@code c}, which must be in the grid, from its recorded zones to the zones matching its current position.
+     */
+    private static void rebucket(Collider c) {
+        computeZones(c);
+
+        // Zones usually come out in the same order, so an unchanged set is found with one pass
+        if(num_new_zones == c.num_zones) {
+            boolean same = true;
+            for(int i = 0;i < num_new_zones;i++) {
+                if(new_zones[i] != c.zones[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if(same) {
+                return;
+            }
+        }
+
+        // Remove from zones left; bucket_stamps marks the new zone set after computeZones
+        int id = c.grid_id;
+        int new_generation = add_generation;
+        for(int i = 0;i < c.num_zones;i++) {
+            if(bucket_stamps[c.zones[i]] != new_generation) {
+                bucketRemove(c.zones[i], id);
+            }
+        }
+
+        // Add to zones entered
+        add_generation = nextGeneration(add_generation, bucket_stamps);
+        for(int i = 0;i < c.num_zones;i++) {
+            bucket_stamps[c.zones[i]] = add_generation;
+        }
+        for(int i = 0;i < num_new_zones;i++) {
+            if(bucket_stamps[new_zones[i]] != add_generation) {
+                bucketAdd(new_zones[i], id);
+            }
+        }
+
+        setZones(c);
+    }
+
+    /**
+     * Fills {@link #new_zones} with the set of zones occupied by {@code c} at its current position and stamps each of
+     * them in {@link #bucket_stamps} with the new value of {@link #add_generation}.
+     */
+    private static void computeZones(Collider c) {
+        add_generation = nextGeneration(add_generation, bucket_stamps);
+        num_new_zones = 0;
+        Vector2 position = c.position;
+        for(Vector2 p : c.zone_check_points) {
+            int zone = zoneIndex(p.x + position.x, p.y + position.y);
+            if(bucket_stamps[zone] != add_generation) {
+                bucket_stamps[zone] = add_generation;
+                if(num_new_zones == new_zones.length) {
+                    new_zones = grow(new_zones);
+                }
+                new_zones[num_new_zones++] = zone;
+            }
+        }
+    }
+
+    /**
+     * Records the contents of {@link #new_zones} as the zones occupied by {@code c}.
+     */
+    private static void setZones(Collider c) {
+        if(c.zones.length < num_new_zones) {
+            c.zones = new int[num_new_zones];
+        }
+        System.arraycopy(new_zones, 0, c.zones, 0, num_new_zones);
+        c.num_zones = num_new_zones;
+    }
+
+    /**
+     * @return The index of the bucket of the zone containing the point {@code (x, y)} in world space. Points outside of
+     * the world are clamped to the nearest zone.
+     */
+    private static int zoneIndex(double x, double y) {
+        int zone_x = Math.min(Math.max(0, (int)(x/zone_size)), grid_width - 1);
+        int zone_y = Math.min(Math.max(0, (int)(y/zone_size)), grid_height - 1);
+        return bucketIndex(zone_x, zone_y);
+    }
+
+    /**
+     * @return The index of the bucket of zone {@code (zone_x, zone_y)}, which must be in the world.
+     */
+    private static int bucketIndex(int zone_x, int zone_y) {
+        return zone_x%window_width*window_height + zone_y%window_height;
+    }
+
+    private static void assignID(Collider c) {
+        int id;
+        if(num_free_ids > 0) {
+            id = free_ids[--num_free_ids];
+        }
+        else {
+            id = next_id++;
+            if(id == colliders.length) {
+                int new_length = colliders.length*2;
+                Collider[] new_colliders = new Collider[new_length];
+                System.arraycopy(colliders, 0, new_colliders, 0, colliders.length);
+                colliders = new_colliders;
+                boolean[] new_in_grid = new boolean[new_length];
+                System.arraycopy(in_grid, 0, new_in_grid, 0, in_grid.length);
+                in_grid = new_in_grid;
+            }
+        }
+        colliders[id] = c;
+        in_grid[id] = false;
+        c.grid_id = id;
+    }
+
+    private static void bucketAdd(int zone, int id) {
+        int[] bucket = buckets[zone];
+        int size = bucket_sizes[zone];
+        if(size == bucket.length) {
+            bucket = grow(bucket);
+            buckets[zone] = bucket;
+        }
+        bucket[size] = id;
+        bucket_sizes[zone] = size + 1;
+    }
+
+    /**
+     * Removes {@code id} from a bucket by swapping it with the last element. Does nothing if {@code id} is not in the
+     * bucket.
+     */
+    private static void bucketRemove(int zone, int id) {
+        int[] bucket = buckets[zone];
+        int last = bucket_sizes[zone] - 1;
+        for(int i = last;i >= 0;i--) {
+            if(bucket[i] == id) {
+                bucket[i] = bucket[last];
+                bucket_sizes[zone] = last;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Increments a generation counter. Clears {@code stamps} when the counter wraps so that old stamps can never match
+     * a new generation.
+     */
+    private static int nextGeneration(int generation, int[] stamps) {
+        generation++;
+        if(generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] new_array = new int[Math.max(1, array.length*2)];
+        System.arraycopy(array, 0, new_array, 0, array.length);
+        return new_array;
+    }
 }
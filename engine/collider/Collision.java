@@ -46,6 +46,14 @@ public class Collision {
         }
     }
 
+    /**
+     * Removes all intersections and sets {@link #collision_found} to {@code false}.
+     */
+    public void clear() {
+        collision_found = false;
+        intersections.clear();
+    }
+
     /**
      * @return The length of the intersections list.
      */
@@ -60,6 +68,21 @@ public class Collision {
         return intersections.iterator();
     }
 
+    /**
+     * Returns the closest {@link Intersection} in the internal intersections list as defined by the object's
+     * {@code distance} without removing it.
+     *
+     * @return The closest {@link Intersection}, or {@code null} if {@link #numIntersections} {@code == 0}.
+     */
+    public Intersection peekClosestIntersection() {
+        if(intersections.size() > 0) {
+            return intersections.get(0);
+        }
+        else {
+            return null;
+        }
+    }
+
     /**
      * Returns the closest {@link Intersection} in the internal intersections list as defined by the object's
      * {@code distance}. Removes the object from the list.
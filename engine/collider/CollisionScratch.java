@@ -0,0 +1,69 @@
+package engine.collider;
+
+import engine.util.Line;
+import engine.util.Vector2;
+
+import java.util.ArrayList;
+
+/**
+ * Reusable buffers and broad phase counters used by collision queries. Each thread that runs queries gets its own
+ * instance, so objects updated in parallel by {@link engine.Game} can run queries at the same time without sharing any
+ * mutable state other than the colliders they look at.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+final class CollisionScratch {
+
+    private static final ThreadLocal<CollisionScratch> instances = ThreadLocal.withInitial(CollisionScratch::create);
+    private static final ArrayList<CollisionScratch> all = new ArrayList<>(); // Every instance, for the counters
+
+    // ColliderGrid queries; see ColliderGrid#beginQuery
+    int[] query_stamps = new int[0];
+    int query_generation = 0;
+
+    // Collider queries
+    final GridRay ray_walk = new GridRay();
+    final ArrayList<Collider> ray_colliders = new ArrayList<>();
+    final double[] sweep_ray = new double[Line.packed_size];
+    final Vector2 hit_point = new Vector2(0, 0);
+    long pairs_tested = 0;
+    long pairs_rejected = 0;
+
+    // StaticGeometry queries
+    int[] edge_stamps = new int[0];
+    int edge_generation = 0;
+    final double[] query_bounds = new double[4];
+    final int[] cell_range = new int[4];
+    double[] rays = new double[0];
+    final double[] reverse_ray = new double[Line.packed_size];
+    int[] shared_edges = new int[4]; // Edges found by StaticGeometry.findShared
+    long edges_tested = 0;
+    long edges_rejected = 0;
+
+    private CollisionScratch() {}
+
+    /**
+     * @return The instance belonging to the current thread.
+     */
+    static CollisionScratch get() {
+        return instances.get();
+    }
+
+    /**
+     * @return A copy of the list of every instance created so far.
+     */
+    static ArrayList<CollisionScratch> all() {
+        synchronized(all) {
+            return new ArrayList<>(all);
+        }
+    }
+
+    private static CollisionScratch create() {
+        CollisionScratch scratch = new CollisionScratch();
+        synchronized(all) {
+            all.add(scratch);
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,142 @@
+package engine.collider;
+
+import engine.util.Line;
+
+/**
+ * Walks the cells of a uniform grid crossed by a {@link Line}, in order from {@code p1} toward {@code p2}, using a
+ * digital differential analyzer. Used by {@link Collider#rayCast} to visit only the {@link ColliderGrid} zones and
+ * {@link StaticGeometry} cells that a ray passes through. The walk is limited to the grid plus a border of one cell, so
+ * lines that do not end at {@code p1} or {@code p2} are finite.
+ * <p>
+ * Usage:
+ * <pre>
+ * if(walk.start(ray, cell_size, grid_width, grid_height)) {
+ *     do {
+ *         visit(walk.cell_x, walk.cell_y);
+ *     } while(walk.next());
+ * }
+ * </pre>
+ *
+ * @author Galen Savidge
+ * @version 6/11/2020
+ */
+class GridRay {
+
+    /**
+     * The current cell. May be one cell outside of the grid on any side.
+     */
+    int cell_x, cell_y;
+
+    /**
+     * The value of the line parameter {@code t} where the line leaves the current cell, where {@code t = 0} at {@code
+     * p1} and {@code t = 1} at {@code p2}.
+     */
+    double t_exit;
+
+    private int step_x, step_y;
+    private int min_cell_x, min_cell_y, max_cell_x, max_cell_y;
+    private double t_max_x, t_max_y; // Values of t at the next vertical and horizontal cell boundaries
+    private double t_delta_x, t_delta_y; // Change in t to cross one cell horizontally and vertically
+    private double t_end;
+    private final double[] t_range = new double[2];
+
+    /**
+     * Moves to the first cell crossed by {@code ray}.
+     *
+     * @param cell_size   The size of each grid cell in world pixels.
+     * @param grid_width  The width of the grid in cells.
+     * @param grid_height The height of the grid in cells.
+     * @return False if {@code ray} does not cross the grid, in which case there are no cells to visit.
+     */
+    boolean start(Line ray, int cell_size, int grid_width, int grid_height) {
+        double x1 = ray.p1.x, y1 = ray.p1.y;
+        double dx = ray.p2.x - x1, dy = ray.p2.y - y1;
+        double t_start = ray.p1_endpoint ? 0 : Double.NEGATIVE_INFINITY;
+        t_end = ray.p2_endpoint ? 1 : Double.POSITIVE_INFINITY;
+
+        // Clip the line to the grid and its border
+        min_cell_x = -1;
+        min_cell_y = -1;
+        max_cell_x = grid_width;
+        max_cell_y = grid_height;
+        t_range[0] = t_start;
+        t_range[1] = t_end;
+        if(!clip(x1, dx, (double)min_cell_x*cell_size, (double)(max_cell_x + 1)*cell_size, t_range)
+                || !clip(y1, dy, (double)min_cell_y*cell_size, (double)(max_cell_y + 1)*cell_size, t_range)) {
+            return false;
+        }
+        t_start = t_range[0];
+        t_end = t_range[1];
+        if(Double.isInfinite(t_start)) {
+            t_start = 0; // Only possible for a zero length line
+        }
+        if(Double.isInfinite(t_end)) {
+            t_end = t_start;
+        }
+
+        // First cell
+        double x = x1 + t_start*dx, y = y1 + t_start*dy;
+        cell_x = clamp((int)Math.floor(x/cell_size), min_cell_x, max_cell_x);
+        cell_y = clamp((int)Math.floor(y/cell_size), min_cell_y, max_cell_y);
+
+        // Distances to the next cell boundaries
+        step_x = (int)Math.signum(dx);
+        step_y = (int)Math.signum(dy);
+        t_max_x = step_x == 0 ? Double.POSITIVE_INFINITY
+                : ((double)(step_x > 0 ? cell_x + 1 : cell_x)*cell_size - x1)/dx;
+        t_max_y = step_y == 0 ? Double.POSITIVE_INFINITY
+                : ((double)(step_y > 0 ? cell_y + 1 : cell_y)*cell_size - y1)/dy;
+        t_delta_x = step_x == 0 ? Double.POSITIVE_INFINITY : cell_size/Math.abs(dx);
+        t_delta_y = step_y == 0 ? Double.POSITIVE_INFINITY : cell_size/Math.abs(dy);
+
+        t_exit = Math.min(Math.min(t_max_x, t_max_y), t_end);
+        return true;
+    }
+
+    /**
+     * Moves to the next cell crossed by the line.
+     *
+     * @return False if the line has no more cells to visit.
+     */
+    boolean next() {
+        if(t_exit >= t_end) {
+            return false;
+        }
+        if(t_max_x < t_max_y) {
+            cell_x += step_x;
+            t_max_x += t_delta_x;
+        }
+        else {
+            cell_y += step_y;
+            t_max_y += t_delta_y;
+        }
+        if(cell_x < min_cell_x || cell_x > max_cell_x || cell_y < min_cell_y || cell_y > max_cell_y) {
+            return false;
+        }
+        t_exit = Math.min(Math.min(t_max_x, t_max_y), t_end);
+        return true;
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Narrows {@code t_range} to the values of t for which {@code start + t*delta} lies in {@code [min, max]}.
+     *
+     * @return False if the resulting range is empty.
+     */
+    private static boolean clip(double start, double delta, double min, double max, double[] t_range) {
+        if(delta == 0) {
+            return start >= min && start <= max;
+        }
+        double t1 = (min - start)/delta;
+        double t2 = (max - start)/delta;
+        t_range[0] = Math.max(t_range[0], Math.min(t1, t2));
+        t_range[1] = Math.min(t_range[1], Math.max(t1, t2));
+        return t_range[0] <= t_range[1];
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.min(Math.max(value, min), max);
+    }
+}
@@ -76,6 +76,24 @@ public class Intersection {
         this.reversed = reverse;
     }
 
+    /**
+     * Same as {@link #Intersection(PhysicsObject, Vector2, Line, Line, boolean)}, using the normal already calculated
+     * for {@code edge} by its {@link Collider}.
+     *
+     * @param normal_x The x component of the right-hand unit normal of {@code edge} before any reversal.
+     * @param normal_y The y component of the right-hand unit normal of {@code edge} before any reversal.
+     */
+    Intersection(PhysicsObject collided_with, Vector2 point, Line edge, Line ray, boolean reverse, double normal_x,
+                 double normal_y) {
+        this(collided_with, point, edge, ray, reverse);
+        if(reverse) {
+            this.normal = new Vector2(-normal_x, -normal_y);
+        }
+        else {
+            this.normal = new Vector2(normal_x, normal_y);
+        }
+    }
+
     /**
      * @return The unit-magnitude normal of the edge intersected with. If {@code reversed == true} the normal points
      * inside the {@code Collider}, though generally it points outside.
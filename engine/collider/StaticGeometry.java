@@ -0,0 +1,692 @@
+package engine.collider;
+
+import engine.World;
+import engine.objects.PhysicsObject;
+import engine.util.Line;
+import engine.util.Misc;
+import engine.util.Vector2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * A single collision mesh built from the colliders of unmoving level geometry. Baking removes the colliders from {@link
+ * ColliderGrid} and stores their edges and vertices in flat arrays indexed by a uniform segment grid, so sweeps and
+ * checks against level geometry look up a handful of nearby edges instead of every tile's collider. Edges shared by two
+ * adjacent solid colliders can never be reached from outside and are hidden.
+ * <p>
+ * The mesh is changed in place: baking a collider inserts its edges into the cells they cross and hides the edges it
+ * shares with colliders already in the mesh, and removing a collider frees its edges and exposes the edges that only
+ * it was hiding. The slots of freed edges are reused, so the arrays only grow with the largest number of edges in the
+ * mesh at once. Like {@link ColliderGrid}, the segment grid covers {@link World#getActiveWidth} by {@link
+ * World#getActiveHeight} and wraps around beyond it, and is only allocated by {@link ColliderGrid#init}.
+ * <p>
+ * Each edge and vertex remembers the {@link PhysicsObject} it came from, so {@link Intersection} objects returned
+ * from the mesh are the same as those returned by the original colliders.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ * @see PhysicsObject#isStaticGeometry
+ */
+public class StaticGeometry {
+
+    // Maximum distance between the endpoints of two edges for them to be considered the same edge
+    private static final double merge_tolerance = 4*Collider.edge_separation;
+
+    // Colliders baked into the mesh, in the order they were baked
+    private static final ArrayList<Collider> baked = new ArrayList<>();
+    private static volatile boolean dirty = false; // If true, changed colliders are updated before the next query
+
+    // Edges, indexed by slot; vertex e is the end point of edge e, since edges run clockwise
+    private static Line[] edges = new Line[0]; // Null for free slots
+    private static PhysicsObject[] edge_owners = new PhysicsObject[0];
+    private static int[] edge_matches = new int[0]; // Shared edges hiding each edge; edges with none are exposed
+    private static double[] edge_bounds = new double[0]; // Bounding boxes packed as min_x, min_y, max_x, max_y
+    private static double[] edge_data = new double[0]; // Packed line segments; see Line.pack
+    private static double[] vertices = new double[0]; // Packed as x, y pairs
+    private static int num_slots = 0; // Edge slots ever used; slots at or past this are free
+    private static final BitSet free_slots = new BitSet(); // Free slots below num_slots
+    private static int num_exposed = 0;
+
+    // Segment grid: per-cell lists of exposed edges, their vertices, and hidden edges in increasing order, indexed by
+    // cell_x%window_width*window_height + cell_y%window_height
+    private static int cell_size;
+    private static int grid_width, grid_height; // Size of the world in cells
+    private static int window_width, window_height; // Size of the cell array; cells wrap around past this
+    private static int[][] cell_edges = new int[0][];
+    private static int[] cell_edge_counts = new int[0];
+    private static int[][] cell_vertices = new int[0][];
+    private static int[] cell_vertex_counts = new int[0];
+    private static int[][] cell_hidden = new int[0][];
+    private static int[] cell_hidden_counts = new int[0];
+    private static final int[] edge_cells = new int[4]; // Cell range of the edge being moved between lists
+
+
+    /**
+     * Removes all colliders from the mesh and sizes the segment grid to the active area of {@link World}. Called by
+     * {@link ColliderGrid#init}.
+     */
+    static void init() {
+        for(Collider c : baked) {
+            c.baked = false;
+            c.mesh_edges = null;
+            c.mesh_changed = false;
+        }
+        baked.clear();
+        Arrays.fill(edges, null);
+        Arrays.fill(edge_owners, null);
+        num_slots = 0;
+        free_slots.clear();
+        num_exposed = 0;
+        dirty = false;
+
+        cell_size = Math.max(1, ColliderGrid.getZoneSize());
+        grid_width = World.getWidth()/cell_size + 1;
+        grid_height = World.getHeight()/cell_size + 1;
+        window_width = Math.min(grid_width, World.getActiveWidth()/cell_size + 1);
+        window_height = Math.min(grid_height, World.getActiveHeight()/cell_size + 1);
+        int num_cells = window_width*window_height;
+        cell_edges = new int[num_cells][];
+        cell_edge_counts = new int[num_cells];
+        cell_vertices = new int[num_cells][];
+        cell_vertex_counts = new int[num_cells];
+        cell_hidden = new int[num_cells][];
+        cell_hidden_counts = new int[num_cells];
+    }
+
+    /**
+     * Bakes the colliders of every object in {@code objects} marked as static geometry into the mesh. The colliders
+     * are removed from {@link ColliderGrid}. Should be called once the objects have been created, e.g. when a level or
+     * a part of one has loaded. Only the new colliders' edges and the edges they hide are touched.
+     *
+     * @see PhysicsObject#isStaticGeometry
+     */
+    public static void bake(ArrayList<PhysicsObject> objects) {
+        applyChanges();
+        CollisionScratch scratch = CollisionScratch.get();
+        for(PhysicsObject o : objects) {
+            if(o == null) {
+                continue;
+            }
+            Collider c = o.collider;
+            if(o.isStaticGeometry() && c != null && !c.baked && !o.isDeleted()) {
+                ColliderGrid.remove(c);
+                c.baked = true;
+                baked.add(c);
+                addEdges(c, scratch);
+            }
+        }
+    }
+
+    /**
+     * @return The number of edges in the mesh.
+     */
+    public static int numEdges() {
+        applyChanges();
+        return num_exposed;
+    }
+
+
+    /**
+     * @return The number of mesh edges considered by {@link Collider#check} and {@link Collider#sweep} since the last
+     * call to {@link Collider#resetBroadPhaseCounters}.
+     */
+    public static long getEdgesTested() {
+        long tested = 0;
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            tested += scratch.edges_tested;
+        }
+        return tested;
+    }
+
+    /**
+     * @return The number of mesh edges that {@link Collider#check} and {@link Collider#sweep} skipped without an
+     * intersection test because their bounding boxes did not overlap the collider's, since the last call to {@link
+     * Collider#resetBroadPhaseCounters}.
+     */
+    public static long getEdgesRejected() {
+        long rejected = 0;
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            rejected += scratch.edges_rejected;
+        }
+        return rejected;
+    }
+
+    static void resetCounters() {
+        for(CollisionScratch scratch : CollisionScratch.all()) {
+            scratch.edges_tested = 0;
+            scratch.edges_rejected = 0;
+        }
+    }
+
+
+    /* Queries used by Collider */
+
+    /**
+     * Flags the edges of {@code c} to be updated before the next query, or once the parallel update pass is over if one
+     * is running. Called when a baked {@link Collider} is moved, enabled, disabled, or deleted.
+     */
+    static void invalidate(Collider c) {
+        c.mesh_changed = true;
+        dirty = true;
+    }
+
+    /**
+     * Adds every object whose mesh edges intersect the edges of {@code collider} and that passes {@code filter} to
+     * {@code objects}. Objects already in {@code objects} are not added again.
+     */
+    static void check(Collider collider, Predicate<PhysicsObject> filter, ArrayList<PhysicsObject> objects,
+                      CollisionScratch scratch) {
+        applyChanges();
+        if(num_exposed == 0) {
+            return;
+        }
+
+        double[] collider_edges = collider.worldEdges();
+        int num_collider_edges = collider.numVertices();
+        double[] box = collider.getBounds(null, scratch.query_bounds);
+        int[] cell_range = setCellRange(box, scratch.cell_range);
+        int[] edge_stamps = beginEdgeQuery(scratch);
+        int edge_generation = scratch.edge_generation;
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                for(int k = 0;k < cell_edge_counts[cell];k++) {
+                    int e = cell_edges[cell][k];
+                    if(edge_stamps[e] == edge_generation) {
+                        continue;
+                    }
+                    edge_stamps[e] = edge_generation;
+
+                    PhysicsObject owner = edge_owners[e];
+                    if(owner == collider.getObject() || objects.contains(owner) || !filter.test(owner)) {
+                        continue;
+                    }
+                    if(!edgeInBounds(e, box, scratch)) {
+                        continue;
+                    }
+                    for(int f = 0;f < num_collider_edges;f++) {
+                        if(Line.intersection(collider_edges, f*Line.packed_size, edge_data, e*Line.packed_size,
+                                scratch.hit_point)) {
+                            objects.add(owner);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sweeps {@code collider} across the mesh. Adds all intersections found to {@code collision} in the same way as
+     * {@link Collider#sweep}.
+     */
+    static void sweep(Collider collider, Vector2 delta_position, Collision collision, Predicate<Intersection> filter,
+                      CollisionScratch scratch) {
+        applyChanges();
+        if(num_exposed == 0) {
+            return;
+        }
+
+        double dx = delta_position.x, dy = delta_position.y;
+        double[] box = collider.getBounds(delta_position, scratch.query_bounds);
+        int[] cell_range = setCellRange(box, scratch.cell_range);
+        Vector2 hit_point = scratch.hit_point;
+
+        // Rays from the collider's vertices against mesh edges
+        double[] collider_vertices = collider.worldVertices();
+        int num_rays = collider.numVertices();
+        if(scratch.rays.length < num_rays*Line.packed_size) {
+            scratch.rays = new double[num_rays*Line.packed_size];
+        }
+        double[] rays = scratch.rays;
+        for(int v = 0;v < num_rays;v++) {
+            double x = collider_vertices[2*v], y = collider_vertices[2*v + 1];
+            Line.pack(x, y, x + dx, y + dy, rays, v*Line.packed_size);
+        }
+        int[] edge_stamps = beginEdgeQuery(scratch);
+        int edge_generation = scratch.edge_generation;
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                for(int k = 0;k < cell_edge_counts[cell];k++) {
+                    int e = cell_edges[cell][k];
+                    if(edge_stamps[e] == edge_generation) {
+                        continue;
+                    }
+                    edge_stamps[e] = edge_generation;
+                    if(edge_owners[e] == collider.getObject() || !edgeInBounds(e, box, scratch)) {
+                        continue;
+                    }
+
+                    for(int r = 0;r < num_rays;r++) {
+                        if(Line.intersection(rays, r*Line.packed_size, edge_data, e*Line.packed_size, hit_point)) {
+                            Intersection i = new Intersection(edge_owners[e], hit_point, edges[e],
+                                    new Line(rays, r*Line.packed_size), false);
+                            if(filter.test(i)) {
+                                collision.addIntersection(i);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Reversed rays from mesh vertices against the collider's edges
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                for(int k = 0;k < cell_vertex_counts[cell];k++) {
+                    int v = cell_vertices[cell][k];
+                    double x = vertices[2*v], y = vertices[2*v + 1];
+                    if(x < box[0] || x > box[2] || y < box[1] || y > box[3]
+                            || edge_owners[v] == collider.getObject()) {
+                        continue;
+                    }
+                    Line.pack(x, y, x - dx, y - dy, scratch.reverse_ray, 0);
+                    collider.rayCheck(edge_owners[v], collision, scratch.reverse_ray, 0, true, filter, hit_point);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a ray-cast made of several calls to {@link #rayCheckCell}. Edges checked by one call are not checked again
+     * by later calls until the next ray-cast starts.
+     */
+    static void beginRayCast(CollisionScratch scratch) {
+        applyChanges();
+        beginEdgeQuery(scratch);
+    }
+
+    /**
+     * Ray-casts against the edges in cell {@code (cell_x, cell_y)} of the segment grid that have not been checked since
+     * the last call to {@link #beginRayCast}. Adds all intersections found to {@code collision} in the same way as
+     * {@link Collider#rayCast}. Cells outside of the world are ignored.
+     */
+    static void rayCheckCell(int cell_x, int cell_y, Collision collision, Line ray, Predicate<Intersection> filter,
+                             CollisionScratch scratch) {
+        if(cell_x < 0 || cell_x >= grid_width || cell_y < 0 || cell_y >= grid_height) {
+            return;
+        }
+        int[] edge_stamps = scratch.edge_stamps;
+        int edge_generation = scratch.edge_generation;
+        Vector2 hit_point = scratch.hit_point;
+        int cell = cellIndex(cell_x, cell_y);
+        for(int k = 0;k < cell_edge_counts[cell];k++) {
+            int e = cell_edges[cell][k];
+            if(edge_stamps[e] == edge_generation) {
+                continue;
+            }
+            edge_stamps[e] = edge_generation;
+            if(ray.intersection(edge_data, e*Line.packed_size, hit_point)) {
+                Intersection i = new Intersection(edge_owners[e], hit_point, edges[e], ray, false);
+                if(filter.test(i)) {
+                    collision.addIntersection(i);
+                }
+            }
+        }
+    }
+
+
+    /* Mesh construction */
+
+    /**
+     * Updates the edges of the colliders flagged by {@link #invalidate}: removes their old edges, then adds their edges
+     * at their current positions if they are still baked and enabled. Colliders are visited in the order they were
+     * baked, so the result does not depend on the order in which they were flagged. Does nothing while objects are
+     * being updated in parallel, since other threads may be reading the mesh.
+     */
+    static void applyChanges() {
+        if(!dirty || ColliderGrid.inParallelUpdate()) {
+            return;
+        }
+        dirty = false;
+        CollisionScratch scratch = CollisionScratch.get();
+        for(Collider c : baked) {
+            if(c.mesh_changed) {
+                removeEdges(c, scratch);
+            }
+        }
+        for(Collider c : baked) {
+            if(c.mesh_changed) {
+                c.mesh_changed = false;
+                if(c.baked) {
+                    addEdges(c, scratch);
+                }
+            }
+        }
+        baked.removeIf(c -> !c.baked);
+    }
+
+    /**
+     * Adds the edges of {@code c} to the mesh if it is enabled. Edges of solid colliders that are the same segment as
+     * an edge of another solid collider in reverse are hidden, along with that edge.
+     */
+    private static void addEdges(Collider c, CollisionScratch scratch) {
+        PhysicsObject owner = c.getObject();
+        if(!c.isEnabled() || owner == null) {
+            return;
+        }
+        ArrayList<Line> lines = c.getEdges();
+        c.mesh_edges = new int[lines.size()];
+        for(int i = 0;i < lines.size();i++) {
+            int e = newEdge(lines.get(i), owner);
+            c.mesh_edges[i] = e;
+            if(owner.solid) {
+                int num_shared = findShared(e, scratch);
+                for(int k = 0;k < num_shared;k++) {
+                    int other = scratch.shared_edges[k];
+                    if(edge_matches[other]++ == 0) {
+                        removeExposed(other);
+                        cellInsert(other, cell_hidden, cell_hidden_counts);
+                    }
+                }
+                edge_matches[e] = num_shared;
+            }
+            if(edge_matches[e] == 0) {
+                expose(e);
+            }
+            else {
+                cellInsert(e, cell_hidden, cell_hidden_counts);
+            }
+        }
+    }
+
+    /**
+     * Removes the edges of {@code c} from the mesh and frees their slots. Edges of other colliders that were only
+     * hidden by them are exposed again.
+     */
+    private static void removeEdges(Collider c, CollisionScratch scratch) {
+        if(c.mesh_edges == null) {
+            return;
+        }
+        for(int e : c.mesh_edges) {
+            if(edge_matches[e] == 0) {
+                removeExposed(e);
+            }
+            else {
+                cellDelete(e, cell_hidden, cell_hidden_counts);
+            }
+            if(edge_owners[e].solid) {
+                int num_shared = findShared(e, scratch);
+                for(int k = 0;k < num_shared;k++) {
+                    int other = scratch.shared_edges[k];
+                    if(--edge_matches[other] == 0) {
+                        cellDelete(other, cell_hidden, cell_hidden_counts);
+                        expose(other);
+                    }
+                }
+            }
+            edges[e] = null;
+            edge_owners[e] = null;
+            free_slots.set(e);
+        }
+        c.mesh_edges = null;
+    }
+
+    /**
+     * Stores {@code edge} in a free slot, lowest first, without adding it to the segment grid.
+     *
+     * @return The slot used.
+     */
+    private static int newEdge(Line edge, PhysicsObject owner) {
+        int e = free_slots.nextSetBit(0);
+        if(e >= 0) {
+            free_slots.clear(e);
+        }
+        else {
+            e = num_slots++;
+            if(e == edges.length) {
+                int new_length = Math.max(16, edges.length*2);
+                edges = Arrays.copyOf(edges, new_length);
+                edge_owners = Arrays.copyOf(edge_owners, new_length);
+                edge_matches = Arrays.copyOf(edge_matches, new_length);
+                edge_bounds = Arrays.copyOf(edge_bounds, 4*new_length);
+                edge_data = Arrays.copyOf(edge_data, Line.packed_size*new_length);
+                vertices = Arrays.copyOf(vertices, 2*new_length);
+            }
+        }
+        edges[e] = edge;
+        edge_owners[e] = owner;
+        edge_matches[e] = 0;
+        Line.pack(edge.p1.x, edge.p1.y, edge.p2.x, edge.p2.y, edge_data, e*Line.packed_size);
+        edge_bounds[4*e] = Math.min(edge.p1.x, edge.p2.x);
+        edge_bounds[4*e + 1] = Math.min(edge.p1.y, edge.p2.y);
+        edge_bounds[4*e + 2] = Math.max(edge.p1.x, edge.p2.x);
+        edge_bounds[4*e + 3] = Math.max(edge.p1.y, edge.p2.y);
+        vertices[2*e] = edge.p2.x;
+        vertices[2*e + 1] = edge.p2.y;
+        return e;
+    }
+
+    /**
+     * Fills {@code scratch.shared_edges} with the edges in the grid, exposed or hidden, of other solid colliders that
+     * are the same segment as edge {@code e} in reverse.
+     *
+     * @return The number of edges found.
+     */
+    private static int findShared(int e, CollisionScratch scratch) {
+        int[] edge_stamps = beginEdgeQuery(scratch);
+        int edge_generation = scratch.edge_generation;
+        double[] box = scratch.query_bounds;
+        box[0] = edge_bounds[4*e] - merge_tolerance;
+        box[1] = edge_bounds[4*e + 1] - merge_tolerance;
+        box[2] = edge_bounds[4*e + 2] + merge_tolerance;
+        box[3] = edge_bounds[4*e + 3] + merge_tolerance;
+        int[] cell_range = setCellRange(box, scratch.cell_range);
+        int num_shared = 0;
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                for(int list = 0;list < 2;list++) {
+                    int[] cell_list = list == 0 ? cell_edges[cell] : cell_hidden[cell];
+                    int count = list == 0 ? cell_edge_counts[cell] : cell_hidden_counts[cell];
+                    for(int k = 0;k < count;k++) {
+                        int other = cell_list[k];
+                        if(edge_stamps[other] == edge_generation) {
+                            continue;
+                        }
+                        edge_stamps[other] = edge_generation;
+                        if(edge_owners[other] != edge_owners[e] && edge_owners[other].solid
+                                && isReverse(edges[e], edges[other])) {
+                            if(num_shared == scratch.shared_edges.length) {
+                                scratch.shared_edges = Arrays.copyOf(scratch.shared_edges, 2*num_shared);
+                            }
+                            scratch.shared_edges[num_shared++] = other;
+                        }
+                    }
+                }
+            }
+        }
+        return num_shared;
+    }
+
+    /**
+     * Adds edge {@code e} to the exposed edge lists of the cells it crosses and its vertex to the cell it is in.
+     */
+    private static void expose(int e) {
+        num_exposed++;
+        cellInsert(e, cell_edges, cell_edge_counts);
+        int cell = cellIndex(cellX(vertices[2*e]), cellY(vertices[2*e + 1]));
+        cell_vertices[cell] = insert(cell_vertices[cell], cell_vertex_counts[cell], e);
+        cell_vertex_counts[cell]++;
+    }
+
+    /**
+     * Removes exposed edge {@code e} from the cells it crosses and its vertex from the cell it is in.
+     */
+    private static void removeExposed(int e) {
+        num_exposed--;
+        cellDelete(e, cell_edges, cell_edge_counts);
+        int cell = cellIndex(cellX(vertices[2*e]), cellY(vertices[2*e + 1]));
+        cell_vertex_counts[cell] = delete(cell_vertices[cell], cell_vertex_counts[cell], e);
+    }
+
+    /**
+     * Adds edge {@code e} to the lists in {@code lists} of the cells it crosses.
+     */
+    private static void cellInsert(int e, int[][] lists, int[] counts) {
+        int[] cell_range = setCellRange(edge_bounds, 4*e, edge_cells);
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                lists[cell] = insert(lists[cell], counts[cell], e);
+                counts[cell]++;
+            }
+        }
+    }
+
+    /**
+     * Removes edge {@code e} from the lists in {@code lists} of the cells it crosses.
+     */
+    private static void cellDelete(int e, int[][] lists, int[] counts) {
+        int[] cell_range = setCellRange(edge_bounds, 4*e, edge_cells);
+        for(int cell_x = cell_range[0];cell_x <= cell_range[2];cell_x++) {
+            for(int cell_y = cell_range[1];cell_y <= cell_range[3];cell_y++) {
+                int cell = cellIndex(cell_x, cell_y);
+                counts[cell] = delete(lists[cell], counts[cell], e);
+            }
+        }
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Sets {@code cell_range} to the range of grid cells overlapping the box {@code {min_x, min_y, max_x, max_y}} as
+     * {@code {min_cell_x, min_cell_y, max_cell_x, max_cell_y}}. Ranges wider than the cell array are cut short so that
+     * no two cells in the range share an index. The range is empty if the grid has not been created.
+     *
+     * @return {@code cell_range}.
+     */
+    private static int[] setCellRange(double[] box, int[] cell_range) {
+        return setCellRange(box, 0, cell_range);
+    }
+
+    /**
+     * Same as {@link #setCellRange(double[], int[])} for the box starting at index {@code offset} of {@code box}.
+     */
+    private static int[] setCellRange(double[] box, int offset, int[] cell_range) {
+        if(window_width == 0) {
+            cell_range[0] = 0;
+            cell_range[1] = 0;
+            cell_range[2] = -1;
+            cell_range[3] = -1;
+            return cell_range;
+        }
+        cell_range[0] = cellX(box[offset]);
+        cell_range[1] = cellY(box[offset + 1]);
+        cell_range[2] = Math.min(cellX(box[offset + 2]), cell_range[0] + window_width - 1);
+        cell_range[3] = Math.min(cellY(box[offset + 3]), cell_range[1] + window_height - 1);
+        return cell_range;
+    }
+
+    /**
+     * @return The column of the cell containing {@code x}, clamped to the world.
+     */
+    private static int cellX(double x) {
+        return Math.min(Math.max(0, (int)Math.floor(x/cell_size)), grid_width - 1);
+    }
+
+    /**
+     * @return The row of the cell containing {@code y}, clamped to the world.
+     */
+    private static int cellY(double y) {
+        return Math.min(Math.max(0, (int)Math.floor(y/cell_size)), grid_height - 1);
+    }
+
+    /**
+     * @return The index of cell {@code (cell_x, cell_y)} in the cell arrays. The cell must be in the world.
+     */
+    private static int cellIndex(int cell_x, int cell_y) {
+        return cell_x%window_width*window_height + cell_y%window_height;
+    }
+
+    /**
+     * @return True iff the bounding box of edge {@code e} overlaps {@code box} within {@link Misc#delta}. Updates the
+     * broad phase counters.
+     */
+    private static boolean edgeInBounds(int e, double[] box, CollisionScratch scratch) {
+        scratch.edges_tested++;
+        if(edge_bounds[4*e] > box[2] + Misc.delta || edge_bounds[4*e + 2] < box[0] - Misc.delta
+                || edge_bounds[4*e + 1] > box[3] + Misc.delta || edge_bounds[4*e + 3] < box[1] - Misc.delta) {
+            scratch.edges_rejected++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return True iff {@code a} and {@code b} are the same segment pointing in opposite directions, within {@link
+     * #merge_tolerance}.
+     */
+    private static boolean isReverse(Line a, Line b) {
+        return Math.abs(a.p1.x - b.p2.x) <= merge_tolerance && Math.abs(a.p1.y - b.p2.y) <= merge_tolerance
+                && Math.abs(a.p2.x - b.p1.x) <= merge_tolerance && Math.abs(a.p2.y - b.p1.y) <= merge_tolerance;
+    }
+
+    /**
+     * Inserts {@code value} into the sorted list made of the first {@code size} elements of {@code array}, growing the
+     * array if needed.
+     *
+     * @return The array holding the list.
+     */
+    private static int[] insert(int[] array, int size, int value) {
+        if(array == null) {
+            array = new int[4];
+        }
+        else if(size == array.length) {
+            array = Arrays.copyOf(array, size*2);
+        }
+        int i = size;
+        while(i > 0 && array[i - 1] > value) {
+            array[i] = array[i - 1];
+            i--;
+        }
+        array[i] = value;
+        return array;
+    }
+
+    /**
+     * Removes {@code value} from the sorted list made of the first {@code size} elements of {@code array}, keeping
+     * the rest in order.
+     *
+     * @return The new size of the list.
+     */
+    private static int delete(int[] array, int size, int value) {
+        for(int i = 0;i < size;i++) {
+            if(array[i] == value) {
+                System.arraycopy(array, i + 1, array, i, size - i - 1);
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Starts a query that marks each edge it visits in the edge stamps of {@code scratch}, growing them to fit the
+     * mesh if needed. Edges are visited if their stamp is not equal to {@code scratch.edge_generation}.
+     *
+     * @return {@code scratch.edge_stamps}.
+     */
+    private static int[] beginEdgeQuery(CollisionScratch scratch) {
+        if(scratch.edge_stamps.length < num_slots) {
+            scratch.edge_stamps = new int[edges.length];
+            scratch.edge_generation = 0;
+        }
+        scratch.edge_generation = nextGeneration(scratch.edge_generation, scratch.edge_stamps);
+        return scratch.edge_stamps;
+    }
+
+    private static int nextGeneration(int generation, int[] stamps) {
+        generation++;
+        if(generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+}
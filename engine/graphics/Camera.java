@@ -8,10 +8,11 @@ import engine.objects.PhysicsObject;
 import engine.util.Vector2;
 
 /**
- * An object that moves the camera to track another object.
+ * An object that moves the camera to track another object. When the game uses a fixed timestep, frames drawn
+ * between steps follow the object's interpolated position.
  *
  * @author Galen Savidge
- * @version 5/16/2020
+ * @version 6/12/2020
  */
 public class Camera extends GameObject {
 
@@ -21,7 +22,7 @@ public class Camera extends GameObject {
      * @param anchor The object to track. Set to {@code null} for no tracking.
      */
     public Camera(PhysicsObject anchor) {
-        super(Game.camera_priority, 0);
+        super(Game.camera_priority, Game.camera_layer);
         this.suspend_tier = Integer.MAX_VALUE;
         this.anchor = anchor;
         this.update();
@@ -48,4 +49,15 @@ public class Camera extends GameObject {
             setPosition(anchor.getPosition());
         }
     }
+
+    /**
+     * Moves the camera to the anchor's interpolated position for the frame being drawn. Runs before any other object
+     * is drawn; the next {@link #update} moves the camera back to the anchor's actual position.
+     */
+    @Override
+    public void draw() {
+        if(anchor != null && Game.getInterpolationAlpha() < 1) {
+            setPosition(anchor.interpolatedPosition());
+        }
+    }
 }
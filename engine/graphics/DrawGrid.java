@@ -0,0 +1,327 @@
+package engine.graphics;
+
+import engine.World;
+import engine.objects.GameObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A spatial hash of the objects that are only drawn when they are on screen. Objects register a bounding box for their
+ * drawing with an {@link Entry}, which {@link engine.Game} adds to the grid when the object is added to the draw
+ * queue. Each frame {@link engine.Game} asks for the entries near the camera's view and draws only those, so the cost
+ * of drawing scales with what is on screen rather than with the size of the level.
+ * <p>
+ * Moving an entry only marks it; entries are re-bucketed in a batch at the start of the next query. This makes {@link
+ * Entry#setPosition} safe to call from objects updated in parallel.
+ * <p>
+ * Like {@link engine.collider.ColliderGrid}, the buckets only cover {@link World#getActiveWidth} by {@link
+ * World#getActiveHeight} and wrap around beyond it, so cells further apart than that share a bucket. Queries may then
+ * return entries far from the box, which are drawn off screen or skipped by the caller.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class DrawGrid {
+
+    private static final int cell_size_in_grid = 4; // Cell size in world grid squares
+    private static final int initial_bucket_size = 4;
+    private static int cell_size = 0; // Cell size in world pixels; 0 until init is called
+    private static int grid_width; // Width of the world in cells
+    private static int grid_height; // Height of the world in cells
+    private static int window_width; // Width of the bucket array in cells; cells wrap around past this
+    private static int window_height; // Height of the bucket array in cells
+
+    // Per-cell buckets of entries, indexed by cell_x%window_width*window_height + cell_y%window_height
+    private static Entry[][] buckets = new Entry[0][];
+    private static int[] bucket_sizes = new int[0];
+
+    private static final ArrayList<Entry> entries = new ArrayList<>(); // Every entry in the grid
+    private static final ArrayList<Entry> moved = new ArrayList<>(); // Entries to re-bucket before the next query
+    private static int query_generation = 0;
+
+    /**
+     * The draw bounds of one object. Created by the object itself, usually in its constructor, and kept up to date
+     * with {@link #setPosition} as the object moves.
+     */
+    public static final class Entry {
+        private final GameObject object;
+        private final double x_offset, y_offset, width, height;
+        private double x, y;
+        private boolean dirty = false; // True if this entry is in the moved list
+        private int index = -1; // Index in entries, or -1 if not in the grid
+        private int min_cell_x, min_cell_y, max_cell_x = -1, max_cell_y = -1; // Cells this entry is bucketed in
+        private int query_stamp = 0;
+        private long draw_rank = 0;
+
+        /**
+         * @param object   The object drawn within these bounds.
+         * @param x_offset The left edge of the bounds relative to the object's position.
+         * @param y_offset The top edge of the bounds relative to the object's position.
+         * @param width    The width of the bounds.
+         * @param height   The height of the bounds.
+         */
+        public Entry(GameObject object, double x_offset, double y_offset, double width, double height) {
+            this.object = object;
+            this.x_offset = x_offset;
+            this.y_offset = y_offset;
+            this.width = width;
+            this.height = height;
+        }
+
+        public GameObject getObject() {
+            return object;
+        }
+
+        /**
+         * Moves the bounds along with the object. The grid is updated before the next query.
+         *
+         * @param x The x position of the object.
+         * @param y The y position of the object.
+         */
+        public void setPosition(double x, double y) {
+            this.x = x;
+            this.y = y;
+            if(index >= 0 && !dirty) {
+                dirty = true;
+                synchronized(moved) {
+                    moved.add(this);
+                }
+            }
+        }
+
+        /**
+         * @return A key that orders entries on the same layer in the order they should be drawn. Set by {@link
+         * engine.Game}.
+         */
+        public long getDrawRank() {
+            return draw_rank;
+        }
+
+        public void setDrawRank(long draw_rank) {
+            this.draw_rank = draw_rank;
+        }
+    }
+
+    /**
+     * Sizes the grid to fit the active area of {@link World}. Entries already in the grid are kept and re-bucketed.
+     * Should be called once the size of the world is known, before objects are created.
+     */
+    public static void init() {
+        cell_size = cell_size_in_grid*World.getGridSize();
+        grid_width = World.getWidth()/cell_size + 1;
+        grid_height = World.getHeight()/cell_size + 1;
+        window_width = Math.min(grid_width, World.getActiveWidth()/cell_size + 1);
+        window_height = Math.min(grid_height, World.getActiveHeight()/cell_size + 1);
+        int num_cells = window_width*window_height;
+        buckets = new Entry[num_cells][initial_bucket_size];
+        bucket_sizes = new int[num_cells];
+
+        for(Entry e : entries) {
+            setCells(e);
+            for(int x = e.min_cell_x;x <= e.max_cell_x;x++) {
+                for(int y = e.min_cell_y;y <= e.max_cell_y;y++) {
+                    bucketAdd(bucketIndex(x, y), e);
+                }
+            }
+        }
+    }
+
+
+    /* Grid functions */
+
+    /**
+     * Adds {@code e} to the grid. Does nothing if {@code e} is already in the grid.
+     */
+    public static void add(Entry e) {
+        if(e.index >= 0) {
+            return;
+        }
+        e.index = entries.size();
+        entries.add(e);
+        e.max_cell_x = -1;
+        e.max_cell_y = -1;
+        if(cell_size > 0) {
+            setCells(e);
+            for(int x = e.min_cell_x;x <= e.max_cell_x;x++) {
+                for(int y = e.min_cell_y;y <= e.max_cell_y;y++) {
+                    bucketAdd(bucketIndex(x, y), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes {@code e} from the grid. Does nothing if {@code e} is not in the grid.
+     */
+    public static void remove(Entry e) {
+        if(e.index < 0) {
+            return;
+        }
+        removeFromCells(e, e.min_cell_x, e.min_cell_y, e.max_cell_x, e.max_cell_y);
+
+        // Swap with the last entry
+        Entry last = entries.remove(entries.size() - 1);
+        if(last != e) {
+            entries.set(e.index, last);
+            last.index = e.index;
+        }
+        e.index = -1;
+    }
+
+    /**
+     * Fills {@code out} with the objects whose draw bounds may overlap the box from {@code (min_x, min_y)} to {@code
+     * (max_x, max_y)} in world space. Objects near the box are also returned; each object is returned once.
+     *
+     * @param out The list to fill. Cleared before any objects are added.
+     * @return {@code out}.
+     */
+    public static ArrayList<Entry> query(double min_x, double min_y, double max_x, double max_y,
+                                         ArrayList<Entry> out) {
+        out.clear();
+        if(cell_size == 0) {
+            return out;
+        }
+        applyMoves();
+
+        query_generation++;
+        if(query_generation == Integer.MAX_VALUE) {
+            for(Entry e : entries) {
+                e.query_stamp = 0;
+            }
+            query_generation = 1;
+        }
+        int min_cell_x = cellX(min_x), max_cell_x = cellX(max_x);
+        int min_cell_y = cellY(min_y), max_cell_y = cellY(max_y);
+        max_cell_x = Math.min(max_cell_x, min_cell_x + window_width - 1); // Visit each bucket once
+        max_cell_y = Math.min(max_cell_y, min_cell_y + window_height - 1);
+        for(int x = min_cell_x;x <= max_cell_x;x++) {
+            for(int y = min_cell_y;y <= max_cell_y;y++) {
+                int cell = bucketIndex(x, y);
+                Entry[] bucket = buckets[cell];
+                for(int i = 0;i < bucket_sizes[cell];i++) {
+                    Entry e = bucket[i];
+                    if(e.query_stamp != query_generation) {
+                        e.query_stamp = query_generation;
+                        out.add(e);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+
+    /* Helper functions */
+
+    /**
+     * Re-buckets every entry that moved since the last query, only touching cells that it entered or left.
+     */
+    private static void applyMoves() {
+        synchronized(moved) {
+            for(Entry e : moved) {
+                e.dirty = false;
+                if(e.index < 0) {
+                    continue;
+                }
+                int old_min_x = e.min_cell_x, old_min_y = e.min_cell_y;
+                int old_max_x = e.max_cell_x, old_max_y = e.max_cell_y;
+                setCells(e);
+                if(e.min_cell_x == old_min_x && e.min_cell_y == old_min_y && e.max_cell_x == old_max_x
+                        && e.max_cell_y == old_max_y) {
+                    continue;
+                }
+
+                // Remove from cells left, then add to cells entered
+                for(int x = old_min_x;x <= old_max_x;x++) {
+                    for(int y = old_min_y;y <= old_max_y;y++) {
+                        if(!inCells(e, x, y)) {
+                            bucketRemove(bucketIndex(x, y), e);
+                        }
+                    }
+                }
+                for(int x = e.min_cell_x;x <= e.max_cell_x;x++) {
+                    for(int y = e.min_cell_y;y <= e.max_cell_y;y++) {
+                        if(x < old_min_x || x > old_max_x || y < old_min_y || y > old_max_y) {
+                            bucketAdd(bucketIndex(x, y), e);
+                        }
+                    }
+                }
+            }
+            moved.clear();
+        }
+    }
+
+    /**
+     * Sets the cell range of {@code e} to the cells overlapping its bounds at its current position. Ranges wider than
+     * the bucket array are cut short so that no two cells in the range share a bucket.
+     */
+    private static void setCells(Entry e) {
+        double x = e.x + e.x_offset, y = e.y + e.y_offset;
+        e.min_cell_x = cellX(x);
+        e.min_cell_y = cellY(y);
+        e.max_cell_x = Math.min(cellX(x + e.width), e.min_cell_x + window_width - 1);
+        e.max_cell_y = Math.min(cellY(y + e.height), e.min_cell_y + window_height - 1);
+    }
+
+    private static boolean inCells(Entry e, int x, int y) {
+        return x >= e.min_cell_x && x <= e.max_cell_x && y >= e.min_cell_y && y <= e.max_cell_y;
+    }
+
+    private static void removeFromCells(Entry e, int min_x, int min_y, int max_x, int max_y) {
+        for(int x = min_x;x <= max_x;x++) {
+            for(int y = min_y;y <= max_y;y++) {
+                bucketRemove(bucketIndex(x, y), e);
+            }
+        }
+    }
+
+    /**
+     * @return The column of the cell containing {@code x}, clamped to the world.
+     */
+    private static int cellX(double x) {
+        return Math.min(Math.max(0, (int)Math.floor(x/cell_size)), grid_width - 1);
+    }
+
+    /**
+     * @return The row of the cell containing {@code y}, clamped to the world.
+     */
+    private static int cellY(double y) {
+        return Math.min(Math.max(0, (int)Math.floor(y/cell_size)), grid_height - 1);
+    }
+
+    /**
+     * @return The index of the bucket of cell {@code (x, y)}, which must be in the world.
+     */
+    private static int bucketIndex(int x, int y) {
+        return x%window_width*window_height + y%window_height;
+    }
+
+    private static void bucketAdd(int cell, Entry e) {
+        Entry[] bucket = buckets[cell];
+        int size = bucket_sizes[cell];
+        if(size == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length*2);
+            buckets[cell] = bucket;
+        }
+        bucket[size] = e;
+        bucket_sizes[cell] = size + 1;
+    }
+
+    /**
+     * Removes {@code e} from a bucket by swapping it with the last element. Does nothing if {@code e} is not in the
+     * bucket.
+     */
+    private static void bucketRemove(int cell, Entry e) {
+        Entry[] bucket = buckets[cell];
+        int last = bucket_sizes[cell] - 1;
+        for(int i = last;i >= 0;i--) {
+            if(bucket[i] == e) {
+                bucket[i] = bucket[last];
+                bucket[last] = null;
+                bucket_sizes[cell] = last;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package engine.graphics;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * A recorded list of draw calls for one frame. {@link GameGraphics} records each draw call into a {@link DrawList}
+ * instead of drawing immediately, then replays the list onto the frame buffer, either on the game thread or on the
+ * render thread. Arguments are stored in growable primitive and object arrays that are reused from frame to frame, so
+ * recording does not allocate once the arrays have grown to fit a typical frame.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+class DrawList {
+
+    // Command codes
+    private static final int point = 0;
+    private static final int line = 1;
+    private static final int rectangle = 2;
+    private static final int circle = 3;
+    private static final int image = 4;
+    private static final int text = 5;
+    private static final int operation = 6;
+    private static final int blit = 7;
+
+    private static final int flip_vertical = 1;
+    private static final int flip_horizontal = 2;
+
+    private int[] commands = new int[256];
+    private int num_commands = 0;
+    private int[] ints = new int[1024];
+    private int num_ints = 0;
+    private double[] doubles = new double[256];
+    private int num_doubles = 0;
+    private Object[] objects = new Object[256];
+    private int num_objects = 0;
+
+    private final AffineTransform transform = new AffineTransform(); // Reused by image commands
+
+
+    /* Recording */
+
+    void addPoint(int x, int y, Color color) {
+        addCommand(point);
+        addInts(x, y);
+        addObject(color);
+    }
+
+    void addLine(int x1, int y1, int x2, int y2, Color color) {
+        addCommand(line);
+        addInts(x1, y1);
+        addInts(x2, y2);
+        addObject(color);
+    }
+
+    void addRectangle(int x, int y, int width, int height, Color color) {
+        addCommand(rectangle);
+        addInts(x, y);
+        addInts(width, height);
+        addObject(color);
+    }
+
+    void addCircle(int x, int y, int radius, Color color) {
+        addCommand(circle);
+        addInts(x, y);
+        addInts(radius, 0);
+        addObject(color);
+    }
+
+    void addImage(int x, int y, boolean flip_v, boolean flip_h, double rotation, double scale, Image img) {
+        addCommand(image);
+        addInts(x, y);
+        addInts((flip_v ? flip_vertical : 0) | (flip_h ? flip_horizontal : 0), 0);
+        addDoubles(rotation, scale);
+        addObject(img);
+    }
+
+    /**
+     * Records an image drawn at its own size with no transform.
+     */
+    void addBlit(int x, int y, Image img) {
+        addCommand(blit);
+        addInts(x, y);
+        addObject(img);
+    }
+
+    void addText(int x, int y, String string, Color color) {
+        addCommand(text);
+        addInts(x, y);
+        addObject(string);
+        addObject(color);
+    }
+
+    void addOperation(GameGraphics.BufferOperation op) {
+        addCommand(operation);
+        addObject(op);
+    }
+
+    /**
+     * Empties the list. Releases references to recorded objects so that they can be garbage collected.
+     */
+    void clear() {
+        num_commands = 0;
+        num_ints = 0;
+        num_doubles = 0;
+        Arrays.fill(objects, 0, num_objects, null);
+        num_objects = 0;
+    }
+
+
+    /* Playback */
+
+    /**
+     * Replays every recorded command in order.
+     *
+     * @param g      The {@link Graphics2D} of {@code buffer}.
+     * @param buffer The image being drawn to, passed to {@link GameGraphics.BufferOperation} commands.
+     */
+    void execute(Graphics2D g, BufferedImage buffer) {
+        int i = 0, d = 0, o = 0;
+        for(int c = 0;c < num_commands;c++) {
+            switch(commands[c]) {
+                case point:
+                    g.setColor((Color)objects[o++]);
+                    g.drawLine(ints[i], ints[i + 1], ints[i], ints[i + 1]);
+                    i += 2;
+                    break;
+                case line:
+                    g.setColor((Color)objects[o++]);
+                    g.drawLine(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case rectangle:
+                    g.setColor((Color)objects[o++]);
+                    g.fillRect(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case circle:
+                    g.setColor((Color)objects[o++]);
+                    g.fillOval(ints[i], ints[i + 1], ints[i + 2]*2, ints[i + 2]*2);
+                    i += 4;
+                    break;
+                case image:
+                    drawImage(g, ints[i], ints[i + 1], ints[i + 2], doubles[d], doubles[d + 1], (Image)objects[o++]);
+                    i += 4;
+                    d += 2;
+                    break;
+                case blit:
+                    g.drawImage((Image)objects[o++], ints[i], ints[i + 1], null);
+                    i += 2;
+                    break;
+                case text:
+                    String string = (String)objects[o++];
+                    g.setColor((Color)objects[o++]);
+                    g.drawString(string, ints[i], ints[i + 1]);
+                    i += 2;
+                    break;
+                case operation:
+                    ((GameGraphics.BufferOperation)objects[o++]).apply(g, buffer);
+                    break;
+            }
+        }
+    }
+
+
+    /* Helper functions */
+
+    private void drawImage(Graphics2D g, int x, int y, int flags, double rotation, double scale, Image img) {
+        transform.setToTranslation(x, y);
+
+        if(scale != 1) {
+            transform.scale(scale, scale);
+        }
+
+        if((flags & flip_vertical) != 0) {
+            transform.scale(1, -1);
+            transform.translate(0, -img.getHeight(null));
+        }
+
+        if((flags & flip_horizontal) != 0) {
+            transform.scale(-1, 1);
+            transform.translate(-img.getWidth(null), 0);
+        }
+
+        if(rotation != 0) {
+            transform.rotate(rotation, img.getWidth(null)/2.0, img.getHeight(null)/2.0);
+        }
+
+        g.drawImage(img, transform, null);
+    }
+
+    private void addCommand(int command) {
+        if(num_commands == commands.length) {
+            commands = Arrays.copyOf(commands, commands.length*2);
+        }
+        commands[num_commands++] = command;
+    }
+
+    private void addInts(int a, int b) {
+        if(num_ints + 2 > ints.length) {
+            ints = Arrays.copyOf(ints, ints.length*2);
+        }
+        ints[num_ints++] = a;
+        ints[num_ints++] = b;
+    }
+
+    private void addDoubles(double a, double b) {
+        if(num_doubles + 2 > doubles.length) {
+            doubles = Arrays.copyOf(doubles, doubles.length*2);
+        }
+        doubles[num_doubles++] = a;
+        doubles[num_doubles++] = b;
+    }
+
+    private void addObject(Object object) {
+        if(num_objects == objects.length) {
+            objects = Arrays.copyOf(objects, objects.length*2);
+        }
+        objects[num_objects++] = object;
+    }
+}
@@ -8,30 +8,31 @@ import javax.swing.WindowConstants;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferStrategy;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class with methods to set up the game window and draw things.
  *
  * @author Galen Savidge
- * @version 5/16/2020
+ * @version 6/12/2020
  */
 public class GameGraphics extends GameObject {
 
     /* Static GameGraphics class variables */
 
-    private static final GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
-            .getDefaultScreenDevice()
-            .getDefaultConfiguration();
-
-    private static final JFrame frame = new JFrame();
+    private static GraphicsConfiguration config; // Null when there is no screen
+    private static JFrame frame;
     private static Canvas canvas;
     private static BufferedImage buffer;
     private static BufferStrategy strategy;
     private static Graphics2D bufferGraphics; // Render shapes and sprites to this
-    private static MediaTracker mediaTracker;
+    private static final Component tracker_component = new Container(); // Used by MediaTrackers in waitForImage
+    private static final ConcurrentHashMap<String, Image> images = new ConcurrentHashMap<>(); // Loaded by getImage
+
+    // True if there is no window and draw calls are discarded
+    private static boolean headless = false;
 
     // Width and height in pixels and the scaling factor used when drawing to the screen
     private static int window_width;
@@ -48,6 +49,30 @@ public class GameGraphics extends GameObject {
     // GameGraphics instance in the draw queue
     private static GameGraphics g;
 
+    // Draw calls are recorded into one list while the other is drawn to the screen
+    private static DrawList recording = new DrawList();
+    private static DrawList rendering = new DrawList();
+
+    // Render thread; null when drawing on the game thread
+    private static Thread render_thread;
+    private static final Object render_lock = new Object();
+    private static boolean frame_submitted = false; // True while the render thread has a frame it has not finished
+    private static boolean render_thread_running = false;
+
+    /**
+     * An operation that draws directly to the frame buffer, for effects that need to read what has already been drawn
+     * this frame. Runs in order with other draw calls, on the render thread if one is in use.
+     *
+     * @see #drawOperation
+     */
+    public interface BufferOperation {
+        /**
+         * @param graphics The {@link Graphics2D} of {@code buffer}, in window coordinates.
+         * @param buffer   The frame buffer.
+         */
+        void apply(Graphics2D graphics, BufferedImage buffer);
+    }
+
 
     /* GameGraphics configuration methods */
 
@@ -64,6 +89,7 @@ public class GameGraphics extends GameObject {
         window_scale = scale;
 
         // Set up JFrame
+        frame = new JFrame();
         frame.setTitle(title);
         frame.addWindowListener(new CustomWindow());
         frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -72,31 +98,72 @@ public class GameGraphics extends GameObject {
         frame.setResizable(false);
 
         // Set up Canvas
-        canvas = new Canvas(config);
+        canvas = new Canvas(getConfig());
         canvas.setSize(width*scale, height*scale);
         frame.add(canvas, 0);
         frame.pack();
 
         // Set up buffer frame
-        buffer = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+        buffer = getConfig().createCompatibleImage(width, height, Transparency.OPAQUE);
         canvas.createBufferStrategy(2);
         do {
             strategy = canvas.getBufferStrategy();
         } while(strategy == null);
         bufferGraphics = (Graphics2D)buffer.getGraphics();
 
-        // Media tracker
-        mediaTracker = new MediaTracker(canvas);
-
         // Add GameGraphics object to the draw queue
         g = new GameGraphics();
     }
 
+    /**
+     * Sets up graphics without a window, for running the game where there is no display. Draw calls are discarded, and
+     * images returned by {@link #getImage} are not decoded until their size or pixels are first needed. {@link
+     * #getFrame} and {@link #getCanvas} return {@code null}. Should be called instead of {@link #initWindow}, before
+     * any images are loaded.
+     *
+     * @param width  Width of the draw area in pixels, used by objects that depend on the camera size.
+     * @param height Height of the draw area in pixels.
+     * @see Game#runSteps
+     */
+    public static void initHeadless(int width, int height) {
+        headless = true;
+        window_width = width;
+        window_height = height;
+        window_scale = 1;
+
+        // Buffer for code that reads it directly; never drawn to
+        buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        bufferGraphics = buffer.createGraphics();
+
+        g = new GameGraphics();
+    }
+
+    /**
+     * Sets whether frames are drawn to the screen on a dedicated render thread. If true, draw calls made during one
+     * frame are replayed on the render thread while the game thread updates and records the next frame, so that game
+     * logic and rasterization run in parallel. If false, each frame is drawn on the game thread at the end of the draw
+     * pass. Should be called after {@link #initWindow}. Defaults to {@code false}.
+     */
+    public static void setThreadedRendering(boolean threaded) {
+        if(threaded && render_thread == null && !headless) {
+            render_thread_running = true;
+            render_thread = new Thread(GameGraphics::renderLoop, "Render");
+            render_thread.setDaemon(true);
+            render_thread.start();
+        }
+        else if(!threaded && render_thread != null) {
+            stopRenderThread();
+        }
+    }
+
     /**
      * Closes the window. Should probably only be called when the game exits.
      */
     public static void closeWindow() {
-        frame.dispose();
+        stopRenderThread();
+        if(frame != null) {
+            frame.dispose();
+        }
     }
 
 
@@ -114,6 +181,25 @@ public class GameGraphics extends GameObject {
         return window_scale;
     }
 
+    /**
+     * @return The refresh rate of the default screen in hertz, or 0 if it is unknown or there is no screen.
+     */
+    public static int getRefreshRate() {
+        GraphicsConfiguration config = getConfig();
+        if(config == null) {
+            return 0;
+        }
+        int refresh_rate = config.getDevice().getDisplayMode().getRefreshRate();
+        return refresh_rate == DisplayMode.REFRESH_RATE_UNKNOWN ? 0 : refresh_rate;
+    }
+
+    /**
+     * @return True if graphics were set up with {@link #initHeadless}.
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
     public static JFrame getFrame() {
         return frame;
     }
@@ -122,10 +208,21 @@ public class GameGraphics extends GameObject {
         return canvas;
     }
 
+    /**
+     * @return The frame buffer. Draw calls are not applied to it until the end of the frame; use {@link #drawOperation}
+     * to read or modify it in order with other draw calls.
+     */
     public static BufferedImage getBuffer() {
         return buffer;
     }
 
+    /**
+     * @return The default scaling factor applied to images by {@link #drawImage}.
+     */
+    public static int getDrawScale() {
+        return draw_scale;
+    }
+
     public static void setDrawScale(int draw_scale) {
         if(draw_scale > 0) {
             GameGraphics.draw_scale = draw_scale;
@@ -157,13 +254,29 @@ public class GameGraphics extends GameObject {
      * @return An empty {@link BufferedImage} with the given width and height.
      */
     public static BufferedImage createBufferedImage(int width, int height) {
-        return config.createCompatibleImage(width, height, Transparency.BITMASK);
+        GraphicsConfiguration c = getConfig();
+        if(c == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return c.createCompatibleImage(width, height, Transparency.BITMASK);
+    }
+
+    /**
+     * @return An empty {@link BufferedImage} with the given width and height that keeps partially transparent pixels.
+     */
+    static BufferedImage createTranslucentImage(int width, int height) {
+        GraphicsConfiguration c = getConfig();
+        if(c == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return c.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
     }
 
     /**
      * @return A {@link BufferedImage} representation of {@code image}.
      */
     public static BufferedImage createBufferedImage(Image image) {
+        waitForImage(image);
         BufferedImage b = GameGraphics.createBufferedImage(image.getWidth(null), image.getHeight(null));
         Graphics2D g = b.createGraphics();
         g.drawImage(image, 0, 0, null);
@@ -181,8 +294,9 @@ public class GameGraphics extends GameObject {
             x -= camera_x;
             y -= camera_y;
         }
-        bufferGraphics.setColor(color);
-        bufferGraphics.drawLine(x, y, x, y);
+        if(!headless) {
+            recording.addPoint(x, y, color);
+        }
     }
 
     /**
@@ -197,8 +311,9 @@ public class GameGraphics extends GameObject {
             x2 -= camera_x;
             y2 -= camera_y;
         }
-        bufferGraphics.setColor(color);
-        bufferGraphics.drawLine(x1, y1, x2, y2);
+        if(!headless) {
+            recording.addLine(x1, y1, x2, y2, color);
+        }
     }
 
     /**
@@ -211,8 +326,9 @@ public class GameGraphics extends GameObject {
             x -= camera_x;
             y -= camera_y;
         }
-        bufferGraphics.setColor(color);
-        bufferGraphics.fillRect(x, y, width, height);
+        if(!headless) {
+            recording.addRectangle(x, y, width, height, color);
+        }
     }
 
     /**
@@ -225,21 +341,42 @@ public class GameGraphics extends GameObject {
             x -= camera_x;
             y -= camera_y;
         }
-        bufferGraphics.setColor(color);
-        bufferGraphics.fillOval(x, y, radius*2, radius*2);
+        if(!headless) {
+            recording.addCircle(x, y, radius, color);
+        }
     }
 
     /**
-     * Loads the image corresponding to the passed file name.
+     * Loads the image corresponding to the passed file name. Each file is only loaded once; later calls with the same
+     * file name return the same {@link Image}. When headless, the image is not decoded until it is first used. Scaled
+     * and flipped copies of the image are cached the first time they are drawn, so the image should not be modified.
+     * May be called from any thread; images loaded on different threads are decoded at the same time.
      */
     public static Image getImage(String filename) {
-        Image i = Toolkit.getDefaultToolkit().getImage(filename);
-        mediaTracker.addImage(i, 0);
-        try {
-            mediaTracker.waitForID(0);
+        Image i = images.get(filename);
+        if(i == null) {
+            i = Toolkit.getDefaultToolkit().getImage(filename);
+            if(!headless) {
+                waitForImage(i);
+            }
+            Image loaded = images.putIfAbsent(filename, i);
+            if(loaded != null) {
+                return loaded; // Another thread loaded the same file first
+            }
+            SpriteAtlas.add(i);
         }
-        catch(InterruptedException me) {
-            System.out.println("error");
+        return i;
+    }
+
+    /**
+     * Loads the image in the passed file without caching it, reading the file again on every call. For images that are
+     * converted once and kept elsewhere, such as tile sets. When headless, the image is not decoded until it is first
+     * used.
+     */
+    public static Image loadImage(String filename) {
+        Image i = Toolkit.getDefaultToolkit().createImage(filename);
+        if(!headless) {
+            waitForImage(i);
         }
         return i;
     }
@@ -273,46 +410,167 @@ public class GameGraphics extends GameObject {
             y -= camera_y;
         }
 
-        AffineTransform transform = new AffineTransform();
-        transform.translate(x, y);
-
         if(scale == 0) {
             scale = draw_scale;
         }
 
-        if(scale != 1) {
-            transform.scale(scale, scale);
+        if(!headless) {
+            // Unrotated images are blitted from a pre-scaled copy when there is one
+            BufferedImage sprite = rotation == 0 ? SpriteAtlas.get(image, scale, flip_vertical, flip_horizontal) : null;
+            if(sprite != null) {
+                recording.addBlit(x, y, sprite);
+            }
+            else if(rotation == 0 && scale == 1 && !flip_vertical && !flip_horizontal) {
+                recording.addBlit(x, y, image);
+            }
+            else {
+                recording.addImage(x, y, flip_vertical, flip_horizontal, rotation, scale, image);
+            }
         }
+    }
 
-        if(flip_vertical) {
-            transform.scale(1, -1);
-            transform.translate(0, -image.getHeight(null));
+    public static void drawText(int x, int y, boolean absolute_position, String text, Color color) {
+        if(!absolute_position) {
+            x -= camera_x;
+            y -= camera_y;
         }
 
-        if(flip_horizontal) {
-            transform.scale(-1, 1);
-            transform.translate(-image.getWidth(null), 0);
+        if(!headless) {
+            recording.addText(x, y, text, color);
         }
+    }
 
-        if(rotation != 0) {
-            transform.rotate(rotation, image.getWidth(null)/2.0, image.getHeight(null)/2.0);
+    /**
+     * Runs {@code operation} on the frame buffer after all draw calls made before it this frame have been applied.
+     */
+    public static void drawOperation(BufferOperation operation) {
+        if(!headless) {
+            recording.addOperation(operation);
         }
+    }
 
-        bufferGraphics.drawImage(image, transform, null);
+
+    /* Private GameGraphics methods */
+
+    /**
+     * @return The configuration of the default screen, or {@code null} if there is no screen.
+     */
+    private static synchronized GraphicsConfiguration getConfig() {
+        if(config == null && !headless && !GraphicsEnvironment.isHeadless()) {
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+        }
+        return config;
     }
 
-    public static void drawText(int x, int y, boolean absolute_position, String text, Color color) {
-        if(!absolute_position) {
-            x -= camera_x;
-            y -= camera_y;
+    /**
+     * Blocks until {@code image} has finished loading.
+     */
+    private static void waitForImage(Image image) {
+        MediaTracker media_tracker = new MediaTracker(tracker_component); // One per call so threads can wait at once
+        media_tracker.addImage(image, 0);
+        try {
+            media_tracker.waitForID(0);
+        }
+        catch(InterruptedException me) {
+            System.out.println("error");
+        }
+        media_tracker.removeImage(image, 0);
+    }
+
+    /**
+     * Ends the frame being recorded. Draws it on the game thread, or hands it to the render thread once the render
+     * thread has finished the previous frame.
+     */
+    private static void endFrame() {
+        if(headless) {
+            return;
+        }
+        if(render_thread == null) {
+            renderFrame(recording);
+            return;
         }
 
-        bufferGraphics.setColor(color);
-        bufferGraphics.drawString(text, x, y);
+        synchronized(render_lock) {
+            while(frame_submitted && render_thread_running) {
+                try {
+                    render_lock.wait();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            DrawList submitted = recording;
+            recording = rendering;
+            rendering = submitted;
+            frame_submitted = true;
+            render_lock.notifyAll();
+        }
     }
 
+    /**
+     * Main loop of the render thread. Draws each frame handed over by {@link #endFrame}.
+     */
+    private static void renderLoop() {
+        while(true) {
+            DrawList frame_list;
+            synchronized(render_lock) {
+                while(!frame_submitted && render_thread_running) {
+                    try {
+                        render_lock.wait();
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                if(!render_thread_running) {
+                    return;
+                }
+                frame_list = rendering;
+            }
+
+            try {
+                renderFrame(frame_list);
+            }
+            catch(RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            synchronized(render_lock) {
+                frame_submitted = false;
+                render_lock.notifyAll();
+            }
+        }
+    }
 
-    /* Private GameGraphics methods */
+    private static void stopRenderThread() {
+        if(render_thread == null) {
+            return;
+        }
+        synchronized(render_lock) {
+            render_thread_running = false;
+            render_lock.notifyAll();
+        }
+        try {
+            render_thread.join(1000);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        render_thread = null;
+        frame_submitted = false;
+    }
+
+    /**
+     * Replays {@code frame_list} onto the frame buffer, clears it, and writes the frame buffer to the window.
+     */
+    private static void renderFrame(DrawList frame_list) {
+        frame_list.execute(bufferGraphics, buffer);
+        frame_list.clear();
+        updateGraphics();
+    }
 
     /**
      * Writes the contents of the buffer frame to the window. Should be called after all other drawing is complete.
@@ -361,7 +619,7 @@ public class GameGraphics extends GameObject {
 
     /**
      * Instantiable GameGraphics class: should not be created by the user. Is instantiated by {@link #initWindow} and
-     * calls {@link #updateGraphics()} at the end of each draw loop.
+     * calls {@link #endFrame()} at the end of each draw loop.
      */
     private GameGraphics() {
         super(0, Game.gamegraphics_layer); // Put this object at the very bottom of the draw queue
@@ -374,7 +632,7 @@ public class GameGraphics extends GameObject {
 
     @Override
     public void draw() {
-        GameGraphics.updateGraphics();
+        GameGraphics.endFrame();
     }
 
     @Override
@@ -0,0 +1,89 @@
+package engine.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+
+/**
+ * Keeps pre-scaled and pre-flipped copies of the images loaded by {@link GameGraphics#getImage}, so that drawing a
+ * sprite at an integer scale is a plain blit with no transform. Copies are made the first time each combination of
+ * scale and flips is drawn and are stored as images compatible with the screen, which Java2D can keep in video memory.
+ * Images that were not loaded by {@link GameGraphics#getImage} may change after they are drawn and are never copied.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+class SpriteAtlas {
+
+    private static final int max_sprite_pixels = 512*512; // Larger images are scaled at draw time instead
+    private static final IdentityHashMap<Image, Sprite> sprites = new IdentityHashMap<>();
+
+    /**
+     * The copies of one source image. Indexed by flip flags: 1 for vertical, 2 for horizontal.
+     */
+    private static class Sprite {
+        final Image source;
+        int scale = 0; // Scale of the copies in variants; 0 if there are none
+        final BufferedImage[] variants = new BufferedImage[4];
+
+        Sprite(Image source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * Allows copies to be made of {@code image}. Should only be called for images whose pixels never change.
+     */
+    static synchronized void add(Image image) {
+        sprites.putIfAbsent(image, new Sprite(image));
+    }
+
+    /**
+     * @return A copy of {@code image} scaled by {@code scale} and flipped as given, or {@code null} if {@code image}
+     * was not added, {@code scale} is not a positive integer, or the copy would be too large.
+     */
+    static synchronized BufferedImage get(Image image, double scale, boolean flip_vertical, boolean flip_horizontal) {
+        Sprite sprite = sprites.get(image);
+        if(sprite == null || scale < 1 || scale != (int)scale) {
+            return null;
+        }
+
+        // Copies at a different scale are dropped, since the draw scale rarely changes once set
+        if(sprite.scale != (int)scale) {
+            int width = image.getWidth(null)*(int)scale, height = image.getHeight(null)*(int)scale;
+            if(width <= 0 || height <= 0 || (long)width*height > max_sprite_pixels) {
+                return null;
+            }
+            sprite.scale = (int)scale;
+            for(int i = 0;i < sprite.variants.length;i++) {
+                sprite.variants[i] = null;
+            }
+        }
+
+        int flags = (flip_vertical ? 1 : 0) | (flip_horizontal ? 2 : 0);
+        BufferedImage variant = sprite.variants[flags];
+        if(variant == null) {
+            variant = createVariant(sprite.source, sprite.scale, flip_vertical, flip_horizontal);
+            sprite.variants[flags] = variant;
+        }
+        return variant;
+    }
+
+
+    /* Helper functions */
+
+    private static BufferedImage createVariant(Image source, int scale, boolean flip_vertical,
+                                               boolean flip_horizontal) {
+        int width = source.getWidth(null), height = source.getHeight(null);
+        BufferedImage variant = GameGraphics.createTranslucentImage(width*scale, height*scale);
+        Graphics2D g = variant.createGraphics();
+        g.setComposite(AlphaComposite.Src); // Copy pixels exactly rather than blending them onto the empty image
+
+        // Flips swap the destination corners; the default interpolation is nearest neighbor
+        int x1 = flip_horizontal ? width*scale : 0, y1 = flip_vertical ? height*scale : 0;
+        int x2 = flip_horizontal ? 0 : width*scale, y2 = flip_vertical ? 0 : height*scale;
+        g.drawImage(source, x1, y1, x2, y2, 0, 0, width, height, null);
+        g.dispose();
+        return variant;
+    }
+}
@@ -13,18 +13,68 @@ import org.w3c.dom.Node;
 
 import java.awt.*;
 import java.awt.image.*;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Caches a set of tiles in an image buffer and draws it in the world.
+ * Draws a grid of tiles in the world. The layer is split into square chunks of tiles; each chunk is drawn into its own
+ * image at the current draw scale the first time it is on screen, so drawing the layer is one unscaled blit per visible
+ * chunk. Chunks from all layers share a least recently used cache of a fixed size, and only cached chunks are kept,
+ * so memory use does not grow with the size of the level. Tiles are read from the layer's gid buffer when a chunk is
+ * drawn, which for compiled levels is a view of the mapped level file.
  *
  * @author Galen Savidge
- * @version 5/13/2020
+ * @version 6/12/2020
  */
 public class TileLayer extends GameObject {
 
-    private final BufferedImage cache;
+    private static final int chunk_size = 8; // Chunk width and height in tiles
+    private static final int max_cached_chunks = 64; // Across all layers
+
+    /**
+     * Chunks on screen recently, least recently drawn first. Evicted chunks are removed from their layer and are
+     * created again when next needed.
+     */
+    private static final LinkedHashMap<Chunk, Chunk> chunk_cache = new LinkedHashMap<Chunk, Chunk>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Chunk, Chunk> eldest) {
+            if(size() > max_cached_chunks) {
+                Chunk chunk = eldest.getKey();
+                chunk.tile_layer.chunks.remove(chunk.index);
+                return true;
+            }
+            return false;
+        }
+    };
+
     private final double x, y, parallax_factor;
+    private final ArrayList<TileSet> tile_sets;
+    private final IntBuffer gid_list;
+    private final int grid_width, grid_height; // Size of the layer in tiles
+    private final int tile_size; // Size of a tile in unscaled pixels
+    private final int overhang; // Height in unscaled pixels that tall tiles extend above the top of their chunk
+    private final int chunks_x, chunks_y; // Size of the layer in chunks
+    private final HashMap<Integer, Chunk> chunks = new HashMap<>(); // Cached chunks by chunk_x*chunks_y + chunk_y
+
+    private static class Chunk {
+        final TileLayer tile_layer;
+        final int chunk_x, chunk_y, index;
+        boolean empty; // True if the chunk has no tiles, in which case it has no image
+        BufferedImage image; // Null until drawn
+        int image_scale; // Draw scale image was drawn at
+
+        Chunk(TileLayer tile_layer, int chunk_x, int chunk_y) {
+            this.tile_layer = tile_layer;
+            this.chunk_x = chunk_x;
+            this.chunk_y = chunk_y;
+            this.index = chunk_x*tile_layer.chunks_y + chunk_y;
+        }
+    }
 
     /**
      * @param layer           The layer on which to draw. See {@link GameObject}.
@@ -32,51 +82,132 @@ public class TileLayer extends GameObject {
      *                        (> 1) will make the layer appear closer to the camera while a smaller value (0-1) will
      *                        make it appear farther in the background. Use 1 for no parallax scrolling.
      * @param tile_sets       A list of {@link TileSet} objects to source tiles from.
-     * @param gid_list        A list of grid ID values representing all the squares in the world grid space. Values
-     *                        range from top left to bottom right, wrapping after each row. Each ID represents a unique
-     *                        tile in a {@link TileSet} in {@code tile_sets} if parsed correctly. Zero represents an
-     *                        empty space.
+     * @param gid_list        A list of grid ID values representing all the squares in the world grid space, from
+     *                        index 0 to its limit. Values range from top left to bottom right, wrapping after each
+     *                        row. Each ID represents a unique tile in a {@link TileSet} in {@code tile_sets} if parsed
+     *                        correctly. Zero represents an empty space. The buffer is read as chunks are drawn and
+     *                        must not be modified.
      */
     public TileLayer(double x, double y, int layer, double parallax_factor, ArrayList<TileSet> tile_sets,
-                     int[] gid_list) {
+                     IntBuffer gid_list) {
         super(0, layer);
         this.x = x;
         this.y = y;
         this.parallax_factor = parallax_factor;
+        this.tile_sets = tile_sets;
+        this.gid_list = gid_list;
+
+        tile_size = World.getGridSize()/World.grid_scaling_factor;
+        grid_width = World.getWidth()/World.getGridSize();
+        grid_height = (gid_list.limit() + grid_width - 1)/grid_width;
+        chunks_x = (grid_width + chunk_size - 1)/chunk_size;
+        chunks_y = (grid_height + chunk_size - 1)/chunk_size;
+
+        // Tiles are aligned to the bottom of their grid square, so taller tiles reach into the chunk above
+        int max_tile_height = tile_size;
+        for(TileSet tile_set : tile_sets) {
+            max_tile_height = Math.max(max_tile_height, tile_set.tile_height);
+        }
+        overhang = max_tile_height - tile_size;
+    }
 
-        // Create image cache
-        cache = GameGraphics.createBufferedImage(World.getWidth()/World.grid_scaling_factor,
-                World.getHeight()/World.grid_scaling_factor);
-        Graphics2D g = cache.createGraphics();
-        int grid_size = World.getGridSize()/World.grid_scaling_factor;
-        int grid_width = World.getWidth()/World.getGridSize();
-
-        // Loop through gid array
-        for(int i = 0;i < gid_list.length;i++) {
-            int gid = gid_list[i];
-
-            // Calculate coordinates
-            int grid_x = (i%grid_width)*grid_size;
-            int grid_y = (i/grid_width)*grid_size;
-
-            // Draw from correct tile set
-            for(TileSet tile_set : tile_sets) {
-                Image tile = tile_set.getTile(gid);
-                if(tile != null) {
-                    g.drawImage(tile, grid_x, grid_y + grid_size - tile.getHeight(null), null);
-                    break;
+    @Override
+    public void draw() {
+        int scale = GameGraphics.getDrawScale();
+        int chunk_pixels = chunk_size*tile_size*scale;
+        double layer_x = x + GameGraphics.camera_x*(parallax_factor - 1);
+        double layer_y = y + GameGraphics.camera_y*(parallax_factor - 1);
+
+        // Range of chunks overlapping the window
+        int min_x = Math.max(0, (int)Math.floor((GameGraphics.camera_x - layer_x)/chunk_pixels));
+        int min_y = Math.max(0, (int)Math.floor((GameGraphics.camera_y - layer_y)/chunk_pixels));
+        int max_x = Math.min(chunks_x - 1,
+                (int)Math.floor((GameGraphics.camera_x + GameGraphics.getWindowWidth() - layer_x)/chunk_pixels));
+        int max_y = Math.min(chunks_y - 1, (int)Math.floor((GameGraphics.camera_y + GameGraphics.getWindowHeight()
+                + overhang*scale - layer_y)/chunk_pixels));
+
+        for(int chunk_x = min_x;chunk_x <= max_x;chunk_x++) {
+            for(int chunk_y = min_y;chunk_y <= max_y;chunk_y++) {
+                Chunk chunk = chunks.get(chunk_x*chunks_y + chunk_y);
+                if(chunk == null) {
+                    chunk = new Chunk(this, chunk_x, chunk_y);
+                    chunk.empty = isEmpty(chunk);
+                    chunks.put(chunk.index, chunk);
+                    chunk_cache.put(chunk, chunk);
+                }
+                else {
+                    chunk_cache.get(chunk); // Mark as recently used
+                }
+                if(chunk.empty) {
+                    continue;
                 }
+                if(chunk.image == null || chunk.image_scale != scale) {
+                    renderChunk(chunk, scale);
+                }
+                GameGraphics.drawImage((int)(layer_x + chunk_x*chunk_pixels),
+                        (int)(layer_y + chunk_y*chunk_pixels - overhang*scale), false, false, false, 0, 1, chunk.image);
             }
         }
-
-        g.dispose();
     }
 
     @Override
-    public void draw() {
-        GameGraphics.drawImage((int)(x + GameGraphics.camera_x*(parallax_factor - 1)),
-                (int)(y + GameGraphics.camera_y*(parallax_factor - 1)),
-                false, cache);
+    public void deleteEvent() {
+        for(Chunk chunk : chunks.values()) {
+            chunk_cache.remove(chunk);
+            chunk.image = null;
+        }
+        chunks.clear();
+    }
+
+    /**
+     * @return True if {@code chunk} has no tiles.
+     */
+    private boolean isEmpty(Chunk chunk) {
+        int first_x = chunk.chunk_x*chunk_size, first_y = chunk.chunk_y*chunk_size;
+        for(int grid_y = first_y;grid_y < Math.min(first_y + chunk_size, grid_height);grid_y++) {
+            for(int grid_x = first_x;grid_x < Math.min(first_x + chunk_size, grid_width);grid_x++) {
+                int i = grid_y*grid_width + grid_x;
+                if(i < gid_list.limit() && gid_list.get(i) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the tiles in {@code chunk} into a new image at {@code scale} times their size. The image includes {@link
+     * #overhang} pixels above the chunk for tiles taller than a grid square.
+     */
+    private void renderChunk(Chunk chunk, int scale) {
+        int chunk_pixels = chunk_size*tile_size;
+        chunk.image = GameGraphics.createBufferedImage(chunk_pixels*scale, (chunk_pixels + overhang)*scale);
+        chunk.image_scale = scale;
+        Graphics2D g = chunk.image.createGraphics();
+        g.scale(scale, scale);
+
+        int first_x = chunk.chunk_x*chunk_size, first_y = chunk.chunk_y*chunk_size;
+        for(int grid_x = first_x;grid_x < Math.min(first_x + chunk_size, grid_width);grid_x++) {
+            for(int grid_y = first_y;grid_y < Math.min(first_y + chunk_size, grid_height);grid_y++) {
+                int i = grid_y*grid_width + grid_x;
+                int gid = i < gid_list.limit() ? gid_list.get(i) : 0;
+                if(gid == 0) {
+                    continue;
+                }
+
+                // Draw from correct tile set
+                for(TileSet tile_set : tile_sets) {
+                    Image tile = tile_set.getTile(gid);
+                    if(tile != null) {
+                        g.drawImage(tile, (grid_x - first_x)*tile_size,
+                                overhang + (grid_y - first_y + 1)*tile_size - tile.getHeight(null), null);
+                        break;
+                    }
+                }
+            }
+        }
+
+        g.dispose();
     }
 
     /**
@@ -89,6 +220,7 @@ public class TileLayer extends GameObject {
         int tile_width;
         int tile_height;
         ArrayList<TileImage> tiles;
+        private final ArrayList<String> files = new ArrayList<>(); // Paths of the .tsx file and every image read
 
         public static class TileImage {
             String file;
@@ -108,6 +240,7 @@ public class TileLayer extends GameObject {
         public TileSet(String directory, String tsx_file, int first_gid) {
             Document doc = XMLOpen(directory + tsx_file);
             this.source = tsx_file;
+            files.add(directory + tsx_file);
 
             this.tiles = new ArrayList<>();
 
@@ -123,7 +256,8 @@ public class TileLayer extends GameObject {
                 // Load image
                 Element image_element = (Element)((Element)tile_node).getElementsByTagName("image").item(0);
                 tile.file = image_element.getAttribute("source");
-                tile.image = GameGraphics.createBufferedImage(GameGraphics.getImage(directory + tile.file));
+                tile.image = GameGraphics.createBufferedImage(GameGraphics.loadImage(directory + tile.file));
+                files.add(directory + tile.file);
 
                 // Set properties
                 tile.first_gid = Integer.parseInt(tile_element.getAttribute("id")) + first_gid;
@@ -142,7 +276,8 @@ public class TileLayer extends GameObject {
 
                 // Load image file
                 tile.file = image_element.getAttribute("source");
-                tile.image = GameGraphics.createBufferedImage(GameGraphics.getImage(directory + tile.file));
+                tile.image = GameGraphics.createBufferedImage(GameGraphics.loadImage(directory + tile.file));
+                files.add(directory + tile.file);
 
                 // Apply transparency
                 Color trans = new Color(Integer.parseInt(image_element.getAttribute("trans"), 16));
@@ -165,6 +300,13 @@ public class TileLayer extends GameObject {
             this.tile_height = Integer.parseInt(tileset_element.getAttribute("tileheight"));
         }
 
+        /**
+         * @return The paths of every file read to create this tile set.
+         */
+        public List<String> getFiles() {
+            return Collections.unmodifiableList(files);
+        }
+
         /**
          * @param gid The ID of a tile in this set.
          * @return An {@link Image} with width {@code tile_width} and height {@code tile_height}.
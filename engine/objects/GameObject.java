@@ -1,6 +1,7 @@
 package engine.objects;
 
 import engine.Game;
+import engine.graphics.DrawGrid;
 
 /**
  * Base game object class which is the parent of all other game object types.
@@ -16,7 +17,8 @@ public abstract class GameObject {
     private boolean deleted = false;
 
     /**
-     * Any objects with lower suspend_tier than {@code Game.suspend_tier} will not run {@code update}.
+     * Any objects with lower suspend_tier than {@code Game.suspend_tier} will not run {@code update}. Should be set in
+     * the constructor; {@link Game} groups objects by tier when they are added to the update queue.
      */
     protected int suspend_tier;
 
@@ -25,6 +27,14 @@ public abstract class GameObject {
      */
     protected boolean persistent;
 
+    /**
+     * The bounds this object draws within, or {@code null} to draw every frame. If set in the constructor, {@link Game}
+     * only calls {@link #draw} while the bounds are near the camera's view.
+     *
+     * @see PhysicsObject#setDrawBounds
+     */
+    protected DrawGrid.Entry draw_entry = null;
+
     /**
      * @param priority The execution priority for this object's {@link #update()}. Higher priority means this object is
      *                 handled earlier in the update queue.
@@ -41,11 +51,14 @@ public abstract class GameObject {
     }
 
     /**
-     * Flags the object for deletion. It will no longer receive update or draw events and will be removed from the
-     * update and draw queues at the end of the current step.
+     * Flags the object for deletion. It will no longer receive update or draw events and will receive {@link
+     * #deleteEvent} at the end of the current step.
      */
     public void delete() {
-        deleted = true;
+        if(!deleted) {
+            deleted = true;
+            Game.removeObject(this);
+        }
     }
 
     /* Accessors */
@@ -70,6 +83,10 @@ public abstract class GameObject {
         return deleted;
     }
 
+    public DrawGrid.Entry getDrawEntry() {
+        return draw_entry;
+    }
+
     /* Events */
 
     /**
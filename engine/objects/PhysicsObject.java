@@ -4,9 +4,11 @@ import engine.Game;
 import engine.collider.Collider;
 import engine.collider.Collision;
 import engine.collider.Intersection;
+import engine.graphics.DrawGrid;
 import engine.graphics.GameGraphics;
 import engine.util.Line;
 import engine.util.Vector2;
+import engine.util.Vector2Pool;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -16,7 +18,7 @@ import java.util.Iterator;
  * The parent class for all objects that inhabit physical space in the game world.
  *
  * @author Galen Savidge
- * @version 6/1/2020
+ * @version 6/12/2020
  */
 public abstract class PhysicsObject extends GameObject {
 
@@ -30,6 +32,7 @@ public abstract class PhysicsObject extends GameObject {
     public boolean solid = false;
     public Collider collider;
     private Vector2 position;
+    private Vector2 previous_position; // Position at the start of the last update
     public Vector2 velocity;
 
 
@@ -109,23 +112,87 @@ public abstract class PhysicsObject extends GameObject {
     }
 
     public void setPosition(Vector2 position) {
-        this.position = position.copy();
-
-        if(collider != null) {
-            collider.setPosition(position);
-        }
+        setPosition(position.x, position.y);
     }
 
     public void setPosition(double x, double y) {
-        setPosition(new Vector2(x, y));
+        if(this.position == null) {
+            this.position = new Vector2(x, y);
+        }
+        else {
+            this.position.set(x, y);
+        }
+
+        if(collider != null) {
+            collider.setPosition(this.position);
+        }
+        if(draw_entry != null) {
+            draw_entry.setPosition(x, y);
+        }
     }
 
     public void addPosition(Vector2 delta_position) {
-        setPosition(position.sum(delta_position));
+        setPosition(position.x + delta_position.x, position.y + delta_position.y);
     }
 
     public void addPosition(double x, double y) {
-        setPosition(position.sum(new Vector2(x, y)));
+        setPosition(position.x + x, position.y + y);
+    }
+
+    /**
+     * Override this method to return {@code true} for objects that never move and do nothing in {@link #update}, such
+     * as level geometry. Once the world is loaded the colliders of these objects are baked into {@link
+     * engine.collider.StaticGeometry} and the objects are removed from the update queue.
+     *
+     * @return True iff this object is part of the static level geometry. Defaults to {@code false}.
+     */
+    public boolean isStaticGeometry() {
+        return false;
+    }
+
+    /**
+     * Sets the box this object draws within, relative to its position. Call from the constructor; once the object has
+     * been added to the draw queue, {@link Game} only calls {@link #draw} while the box is near the camera's view.
+     */
+    protected void setDrawBounds(double x_offset, double y_offset, double width, double height) {
+        draw_entry = new DrawGrid.Entry(this, x_offset, y_offset, width, height);
+        draw_entry.setPosition(position.x, position.y);
+    }
+
+    /**
+     * Sets the draw bounds of this object to the bounding box of its {@link Collider}.
+     *
+     * @see #setDrawBounds
+     */
+    protected void setDrawBoundsToCollider() {
+        double[] bounds = collider.getBounds(null, new double[4]);
+        setDrawBounds(bounds[0] - position.x, bounds[1] - position.y, bounds[2] - bounds[0], bounds[3] - bounds[1]);
+    }
+
+    /**
+     * Override this method to return {@code true} for objects whose {@link #update} only changes this object and
+     * objects it collides with. When {@link Game#setParallelUpdates} is enabled, such objects may be updated on a
+     * worker thread at the same time as other objects far enough away from them in {@link
+     * engine.collider.ColliderGrid}. Their updates must not change any other shared state, and ray-casts made during
+     * the update may see objects elsewhere in the world mid-update.
+     *
+     * @return True iff this object can be updated in parallel with distant objects. Defaults to {@code false}.
+     */
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
+    /**
+     * @return The position of the object between its positions at the start and end of the last update, as given by
+     * {@link Game#getInterpolationAlpha}. Equal to the current position unless the game uses a fixed timestep.
+     */
+    public Vector2 interpolatedPosition() {
+        if(previous_position == null) {
+            return position.copy();
+        }
+        double alpha = Game.getInterpolationAlpha();
+        return new Vector2(previous_position.x + (position.x - previous_position.x)*alpha,
+                previous_position.y + (position.y - previous_position.y)*alpha);
     }
 
     /**
@@ -135,6 +202,13 @@ public abstract class PhysicsObject extends GameObject {
         return position.round();
     }
 
+    /**
+     * @return {@link #interpolatedPosition} rounded down to the nearest pixel. Used to draw objects that move.
+     */
+    public Vector2 interpolatedPixelPosition() {
+        return interpolatedPosition().round();
+    }
+
     /**
      * @param width  This object's width.
      * @param height This object's height.
@@ -148,6 +222,17 @@ public abstract class PhysicsObject extends GameObject {
                 && position.y >= GameGraphics.camera_y - height - margin;
     }
 
+    /**
+     * Used by {@link engine.LevelStreamer} to decide whether this object may be deleted when the region it was created
+     * in is unloaded. Override this function for objects that matter beyond their own position.
+     *
+     * @param margin Extra margin around the screen to include, in pixels.
+     * @return True if the object is within {@code margin} of the screen.
+     */
+    public boolean isNearCamera(double margin) {
+        return isOnScreen(0, 0, margin);
+    }
+
 
     /* Physics functions */
 
@@ -184,22 +269,26 @@ public abstract class PhysicsObject extends GameObject {
      */
     protected ArrayList<Intersection> moveAndCollide(Vector2 delta_position) {
         ArrayList<Intersection> collisions = new ArrayList<>();
-        if(delta_position.equals(Vector2.zero())) {
-            return new ArrayList<>();
+        if(delta_position.isZero()) {
+            return collisions;
         }
 
+        // Work on a scratch copy so the caller's vector is not modified
+        int mark = Vector2Pool.mark();
+        Vector2 remaining = Vector2Pool.obtain(delta_position);
+
         // Loop until a position is found with no collisions or we hit too many iterations
         for(int i = 0;i < 100;i++) {
             // Get the closest surface of the objects collided with
-            Intersection closest = sweepForCollision(delta_position);
+            Intersection closest = sweepForCollision(remaining);
 
             if(closest == null) {
-                addPosition(delta_position);
+                addPosition(remaining);
                 break;
             }
 
             // Remove the portion of the attempted motion that is parallel to the normal vector
-            delta_position = delta_position.sum(closest.getReject());
+            remaining.addInPlace(closest.getReject());
 
             // Send a physics collision event to this object and a collision event to the other object
             this.physicsCollision(closest);
@@ -207,6 +296,7 @@ public abstract class PhysicsObject extends GameObject {
             closest.collided_with.collisionEvent(this);
         }
 
+        Vector2Pool.release(mark);
         return collisions;
     }
 
@@ -319,9 +409,17 @@ public abstract class PhysicsObject extends GameObject {
 
     @Override
     public void update() {
+        if(previous_position == null) {
+            previous_position = position.copy();
+        }
+        else {
+            previous_position.set(position);
+        }
         prePhysicsUpdate();
-        if(!velocity.equals(Vector2.zero())) {
-            moveAndCollide(velocity.multiply(Game.stepTimeSeconds()));
+        if(!velocity.isZero()) {
+            int mark = Vector2Pool.mark();
+            moveAndCollide(velocity.multiply(Game.stepTimeSeconds(), Vector2Pool.obtain()));
+            Vector2Pool.release(mark);
             collider.setPosition(position);
         }
         for(PhysicsObject o : collider.check(position)) {
@@ -0,0 +1,136 @@
+package engine.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A thread safe cache of values loaded from files, such as parsed templates or decoded images. Each value is stored
+ * under a key, usually the path of the main file it was loaded from, and is loaded again if any file it was loaded from
+ * has been modified since. Holds at most a fixed number of values, evicting the least recently used.
+ * <p>
+ * Files are only checked for changes the first time a value is looked up after each call to {@link #revalidate}, so
+ * looking up the same value many times in a batch, such as while loading one level, checks its files only once. When
+ * several threads look up a value that is not cached, it is loaded once and the other threads wait for it.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class FileCache<V> {
+
+    /**
+     * Loads a value for {@link #get}.
+     */
+    public interface Loader<V> {
+        /**
+         * @param files Each file the value is loaded from should be added to this list, so that the value is loaded
+         *              again when one of them changes.
+         */
+        V load(ArrayList<File> files) throws Exception;
+    }
+
+    private static class Entry<V> {
+        final ArrayList<File> files = new ArrayList<>();
+        final FutureTask<V> task;
+        long[] modified; // Modification time of each file when the value was loaded
+        int generation; // Value of FileCache.generation when the files were last checked
+
+        Entry(Loader<V> loader, int generation) {
+            this.generation = generation;
+            this.task = new FutureTask<>(() -> {
+                V value = loader.load(files);
+                modified = new long[files.size()];
+                for(int i = 0;i < modified.length;i++) {
+                    modified[i] = files.get(i).lastModified();
+                }
+                return value;
+            });
+        }
+
+        /**
+         * @return False if any file this entry was loaded from has been modified since.
+         */
+        boolean isCurrent() {
+            for(int i = 0;i < modified.length;i++) {
+                if(files.get(i).lastModified() != modified[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry<V>> entries;
+    private int generation = 0;
+
+    /**
+     * @param max_entries The number of values to keep.
+     */
+    public FileCache(int max_entries) {
+        entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > max_entries;
+            }
+        };
+    }
+
+    /**
+     * Makes the next lookup of each value check whether its files have been modified.
+     */
+    public synchronized void revalidate() {
+        generation++;
+    }
+
+    /**
+     * Returns the value stored under {@code key}, loading it with {@code loader} if it is not cached or its files have
+     * changed.
+     *
+     * @return The value, or {@code null} if {@code loader} threw an exception, in which case the error is printed.
+     */
+    public V get(String key, Loader<V> loader) {
+        Entry<V> entry;
+        boolean load = false;
+        synchronized(this) {
+            entry = entries.get(key);
+
+            // Values still loading are current by definition
+            if(entry != null && entry.generation != generation && entry.task.isDone()) {
+                if(entry.modified != null && entry.isCurrent()) {
+                    entry.generation = generation;
+                }
+                else {
+                    entry = null;
+                }
+            }
+
+            if(entry == null) {
+                entry = new Entry<>(loader, generation);
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+
+        if(load) {
+            entry.task.run();
+        }
+        try {
+            return entry.task.get();
+        }
+        catch(ExecutionException e) {
+            synchronized(this) {
+                entries.remove(key, entry);
+            }
+            if(load) {
+                e.getCause().printStackTrace();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -11,6 +11,11 @@ import java.awt.*;
  * @version 6/1/2020
  */
 public class Line {
+    /**
+     * The number of doubles used to store one line segment in a packed array. See {@link #pack}.
+     */
+    public static final int packed_size = 7;
+
     public final Vector2 p1, p2;
     private double A, B, C; // Defines the line in the form Ax + By = C
     public final boolean p1_endpoint;
@@ -45,6 +50,34 @@ public class Line {
         setConstants();
     }
 
+    /**
+     * Creates a line segment from one segment stored in a packed array.
+     *
+     * @see #pack
+     */
+    public Line(double[] packed, int offset) {
+        this(new Vector2(packed[offset], packed[offset + 1]), new Vector2(packed[offset + 2], packed[offset + 3]));
+    }
+
+    /**
+     * Stores the line segment from {@code (x1, y1)} to {@code (x2, y2)} in {@code out} as {@link #packed_size}
+     * doubles starting at {@code offset}: the two end points followed by the constants A, B, and C. Packed segments can
+     * be tested for intersection without allocating any objects.
+     *
+     * @see #intersection(double[], int, double[], int, Vector2)
+     */
+    public static void pack(double x1, double y1, double x2, double y2, double[] out, int offset) {
+        double A = y2 - y1;
+        double B = x1 - x2;
+        out[offset] = x1;
+        out[offset + 1] = y1;
+        out[offset + 2] = x2;
+        out[offset + 3] = y2;
+        out[offset + 4] = A;
+        out[offset + 5] = B;
+        out[offset + 6] = A*x1 + B*y1;
+    }
+
     /**
      * Helper function to calculate the formula defining the line.
      */
@@ -88,21 +121,45 @@ public class Line {
      * line segments.
      */
     public Vector2 intersection(Line l) {
-        Vector2 p = poi(l);
-        if(p == null) {
-            return null;
-        }
-
-        // Check that the intersection lies on both lines
-        if(betweenBounds(p1.x, p2.x, p.x, p1_endpoint, p2_endpoint)
-                && betweenBounds(p1.y, p2.y, p.y, p1_endpoint, p2_endpoint)
-                && betweenBounds(l.p1.x, l.p2.x, p.x, l.p1_endpoint, l.p2_endpoint)
-                && betweenBounds(l.p1.y, l.p2.y, p.y, l.p1_endpoint, l.p2_endpoint)) {
+        Vector2 p = new Vector2(0, 0);
+        if(intersection(p1.x, p1.y, p2.x, p2.y, A, B, C, p1_endpoint, p2_endpoint,
+                l.p1.x, l.p1.y, l.p2.x, l.p2.y, l.A, l.B, l.C, l.p1_endpoint, l.p2_endpoint, p)) {
             return p;
         }
         return null;
     }
 
+    /**
+     * Finds the point of intersection between this {@code Line} and a packed line segment. Gives the same result as
+     * {@link #intersection(Line)} without allocating.
+     *
+     * @param segment An array of packed line segments.
+     * @param offset  The index of the first element of the segment in {@code segment}.
+     * @param out     Set to the intersection point if one exists, otherwise left unchanged.
+     * @return True iff an intersection exists.
+     * @see #pack
+     */
+    public boolean intersection(double[] segment, int offset, Vector2 out) {
+        return intersection(p1.x, p1.y, p2.x, p2.y, A, B, C, p1_endpoint, p2_endpoint,
+                segment[offset], segment[offset + 1], segment[offset + 2], segment[offset + 3],
+                segment[offset + 4], segment[offset + 5], segment[offset + 6], true, true, out);
+    }
+
+    /**
+     * Finds the point of intersection between two packed line segments. Gives the same result as {@link
+     * #intersection(Line)} without allocating.
+     *
+     * @param out Set to the intersection point if one exists, otherwise left unchanged.
+     * @return True iff an intersection exists.
+     * @see #pack
+     */
+    public static boolean intersection(double[] a, int a_offset, double[] b, int b_offset, Vector2 out) {
+        return intersection(a[a_offset], a[a_offset + 1], a[a_offset + 2], a[a_offset + 3],
+                a[a_offset + 4], a[a_offset + 5], a[a_offset + 6], true, true,
+                b[b_offset], b[b_offset + 1], b[b_offset + 2], b[b_offset + 3],
+                b[b_offset + 4], b[b_offset + 5], b[b_offset + 6], true, true, out);
+    }
+
     /**
      * Finds the shortest vector from the axis defined by this {@link Line} to {@code point}. The returned {@link
      * Vector2} will always be normal to {@code this}.
@@ -121,6 +178,32 @@ public class Line {
 
     /* Helper functions */
 
+    /**
+     * Finds the point of intersection of lines a and b, each given by its end points, constants, and whether each end
+     * point bounds the line. Writes the point to {@code out} and returns true iff it lies on both lines.
+     */
+    private static boolean intersection(double a_x1, double a_y1, double a_x2, double a_y2, double a_A, double a_B,
+                                        double a_C, boolean a_p1_endpoint, boolean a_p2_endpoint,
+                                        double b_x1, double b_y1, double b_x2, double b_y2, double b_A, double b_B,
+                                        double b_C, boolean b_p1_endpoint, boolean b_p2_endpoint, Vector2 out) {
+        double det = (a_A*b_B - b_A*a_B);
+        if(det == 0) {
+            return false;
+        }
+        double x = (b_B*a_C - a_B*b_C)/det;
+        double y = (a_A*b_C - b_A*a_C)/det;
+
+        // Check that the intersection lies on both lines
+        if(betweenBounds(a_x1, a_x2, x, a_p1_endpoint, a_p2_endpoint)
+                && betweenBounds(a_y1, a_y2, y, a_p1_endpoint, a_p2_endpoint)
+                && betweenBounds(b_x1, b_x2, x, b_p1_endpoint, b_p2_endpoint)
+                && betweenBounds(b_y1, b_y2, y, b_p1_endpoint, b_p2_endpoint)) {
+            out.set(x, y);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Fins the point of intersection of two lines. Returns {@code null} iff the lines are parallel.
      */
@@ -137,7 +220,7 @@ public class Line {
      * bound is ignored. For example, assuming a < b and {@code a_is_bound = false}, the function will return {@code
      * true} when c <= b. If both bounds are ignored the function will always return {@code true}.
      */
-    private boolean betweenBounds(double a, double b, double c, boolean a_is_bound, boolean b_is_bound) {
+    private static boolean betweenBounds(double a, double b, double c, boolean a_is_bound, boolean b_is_bound) {
         boolean a_check, b_check;
 
         // a >= b, with some tolerance
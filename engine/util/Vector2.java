@@ -2,6 +2,10 @@ package engine.util;
 
 /**
  * A simple class to represent a 2D vector with double precision.
+ * <p>
+ * Methods such as {@link #sum} and {@link #multiply} return new vectors and leave {@code this} unchanged. Code that
+ * runs every step should prefer the in-place methods (e.g. {@link #addInPlace}) or the out-parameter variants, which
+ * write into an existing vector, combined with scratch vectors from {@link Vector2Pool}.
  *
  * @author Galen Savidge
  * @version 5/18/2020
@@ -39,6 +43,28 @@ public class Vector2 {
         v.y = this.y;
     }
 
+    /**
+     * Sets the components of this vector.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * Sets the components of this vector to those of {@code v}.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 set(Vector2 v) {
+        this.x = v.x;
+        this.y = v.y;
+        return this;
+    }
+
     /**
      * @return True iff the vectors are mathematically equal.
      */
@@ -46,6 +72,14 @@ public class Vector2 {
         return this.x == v.x && this.y == v.y;
     }
 
+    /**
+     * @return True iff this vector equals the zero vector. Equivalent to {@code equals(Vector2.zero())} without the
+     * allocation.
+     */
+    public boolean isZero() {
+        return this.x == 0 && this.y == 0;
+    }
+
     /**
      * @return This vector, rounded down to pixel precision.
      */
@@ -92,7 +126,7 @@ public class Vector2 {
      * @return {@code this} normalized. Returns the zero vector if {@code this} equals the zero vector.
      */
     public Vector2 normalize() {
-        if(this.equals(z)) {
+        if(this.isZero()) {
             return this.copy();
         }
         return this.multiply(1.0/this.abs());
@@ -114,6 +148,116 @@ public class Vector2 {
         return v.multiply(mag_projection);
     }
 
+
+
+    /* In-place and out-parameter variants */
+
+    /**
+     * Adds {@code v} to this vector.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 addInPlace(Vector2 v) {
+        this.x += v.x;
+        this.y += v.y;
+        return this;
+    }
+
+    /**
+     * Adds {@code <a, b>} to this vector.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 addInPlace(double a, double b) {
+        this.x += a;
+        this.y += b;
+        return this;
+    }
+
+    /**
+     * Subtracts {@code v} from this vector.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 subtractInPlace(Vector2 v) {
+        this.x -= v.x;
+        this.y -= v.y;
+        return this;
+    }
+
+    /**
+     * Multiplies this vector by {@code a}.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 scaleInPlace(double a) {
+        this.x *= a;
+        this.y *= a;
+        return this;
+    }
+
+    /**
+     * Normalizes this vector. Leaves the zero vector unchanged.
+     *
+     * @return {@code this}.
+     */
+    public Vector2 normalizeInPlace() {
+        if(this.isZero()) {
+            return this;
+        }
+        return this.scaleInPlace(1.0/this.abs());
+    }
+
+    /**
+     * Writes the vector sum of {@code this} and {@code v} to {@code out}. {@code out} may be {@code this} or {@code
+     * v}.
+     *
+     * @return {@code out}.
+     */
+    public Vector2 sum(Vector2 v, Vector2 out) {
+        return out.set(this.x + v.x, this.y + v.y);
+    }
+
+    /**
+     * Writes the result of the vector subtraction {@code this - v} to {@code out}. {@code out} may be {@code this} or
+     * {@code v}.
+     *
+     * @return {@code out}.
+     */
+    public Vector2 difference(Vector2 v, Vector2 out) {
+        return out.set(this.x - v.x, this.y - v.y);
+    }
+
+    /**
+     * Writes the result of the multiplication {@code this*a} to {@code out}. {@code out} may be {@code this}.
+     *
+     * @return {@code out}.
+     */
+    public Vector2 multiply(double a, Vector2 out) {
+        return out.set(this.x*a, this.y*a);
+    }
+
+    /**
+     * Writes {@code this} normalized to {@code out}. {@code out} may be {@code this}.
+     *
+     * @return {@code out}.
+     */
+    public Vector2 normalize(Vector2 out) {
+        return out.set(this).normalizeInPlace();
+    }
+
+    /**
+     * Writes the projection of {@code this} onto {@code v} to {@code out}. {@code out} may be {@code this} or {@code
+     * v}.
+     *
+     * @return {@code out}.
+     */
+    public Vector2 projection(Vector2 v, Vector2 out) {
+        double mag_v_squared = v.x*v.x + v.y*v.y;
+        double mag_projection = this.dot(v)/mag_v_squared;
+        return out.set(v.x*mag_projection, v.y*mag_projection);
+    }
+
     /**
      * @return The right-hand normal of {@code this}. Note that the (0, 0) point is in the upper left-hand corner
      * meaning the handedness is inverted in practicality.
@@ -134,7 +278,8 @@ public class Vector2 {
      * @return The component of {@code this} normal to {@code v}.
      */
     public Vector2 normalComponent(Vector2 v) {
-        return this.difference(this.projection(v));
+        Vector2 n = this.projection(v, new Vector2(0, 0));
+        return this.difference(n, n);
     }
 
     /**
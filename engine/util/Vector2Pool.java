@@ -0,0 +1,83 @@
+package engine.util;
+
+/**
+ * A stack of reusable scratch {@link Vector2} objects for code that runs every step. Scratch vectors are borrowed with
+ * {@link #obtain} and returned in bulk by passing the value of {@link #mark} taken beforehand to {@link #release}:
+ * <pre>
+ * int mark = Vector2Pool.mark();
+ * Vector2 temp = Vector2Pool.obtain();
+ * ...
+ * Vector2Pool.release(mark);
+ * </pre>
+ * Scratch vectors must not be stored or returned past the matching {@link #release}. The pool grows as needed and
+ * never shrinks, so after the first few steps borrowing vectors does not allocate. Each thread has its own pool, so
+ * objects updated in parallel can borrow vectors without coordinating.
+ *
+ * @author Galen Savidge
+ * @version 6/12/2020
+ */
+public class Vector2Pool {
+
+    private static final ThreadLocal<Vector2Pool> pools = ThreadLocal.withInitial(Vector2Pool::new);
+
+    private Vector2[] pool = new Vector2[64];
+    private int top = 0; // Index of the next free vector
+
+    private Vector2Pool() {}
+
+    /**
+     * @return A marker for the current top of the pool to be passed to {@link #release}.
+     */
+    public static int mark() {
+        return pools.get().top;
+    }
+
+    /**
+     * @return A scratch vector with undefined contents.
+     */
+    public static Vector2 obtain() {
+        return pools.get().next();
+    }
+
+    /**
+     * @return A scratch vector set to {@code <x, y>}.
+     */
+    public static Vector2 obtain(double x, double y) {
+        return obtain().set(x, y);
+    }
+
+    /**
+     * @return A scratch vector set to the value of {@code v}.
+     */
+    public static Vector2 obtain(Vector2 v) {
+        return obtain().set(v);
+    }
+
+    /**
+     * Returns all vectors obtained since {@code mark} was taken to the pool.
+     *
+     * @param mark A value returned by {@link #mark}.
+     */
+    public static void release(int mark) {
+        Vector2Pool p = pools.get();
+        p.top = Math.max(0, Math.min(mark, p.top));
+    }
+
+
+    /* Helper functions */
+
+    private Vector2 next() {
+        if(top == pool.length) {
+            Vector2[] new_pool = new Vector2[pool.length*2];
+            System.arraycopy(pool, 0, new_pool, 0, pool.length);
+            pool = new_pool;
+        }
+        Vector2 v = pool[top];
+        if(v == null) {
+            v = new Vector2(0, 0);
+            pool[top] = v;
+        }
+        top++;
+        return v;
+    }
+}
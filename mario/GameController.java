@@ -2,6 +2,7 @@ package mario;
 
 import engine.graphics.Camera;
 import engine.Game;
+import engine.LevelParser;
 import engine.graphics.GameGraphics;
 import engine.objects.GameObject;
 import engine.objects.PhysicsObject;
@@ -9,12 +10,13 @@ import engine.util.Vector2;
 
 import java.awt.*;
 import java.util.HashMap;
+import java.util.concurrent.Future;
 
 /**
  * A persistent object that keeps track of game variables and controls the high level flow of the game.
  *
  * @author Galen Savidge
- * @version 5/16/2020
+ * @version 6/12/2020
  */
 public class GameController extends GameObject {
 
@@ -44,11 +46,14 @@ public class GameController extends GameObject {
 
     public static void switchLevel(String level_file_name) {
         setPlayerSpawn(level_file_name, 0);
-        new Transition(1, Transition.Type.PIXEL_OUT, () -> _loadArea(level_file_name, 0, Transition.Type.PIXEL_IN));
+        Future<LevelParser.Level> level = WorldLoader.loadInBackground(Mario.level_path, level_file_name);
+        new Transition(1, Transition.Type.PIXEL_OUT, () -> _loadArea(level_file_name, level, 0,
+                Transition.Type.PIXEL_IN));
     }
 
     public static void switchArea(String level_file_name, int spawn_id) {
-        new Transition(1, Transition.Type.FADE_OUT, () -> _loadArea(level_file_name, spawn_id,
+        Future<LevelParser.Level> level = WorldLoader.loadInBackground(Mario.level_path, level_file_name);
+        new Transition(1, Transition.Type.FADE_OUT, () -> _loadArea(level_file_name, level, spawn_id,
                 Transition.Type.FADE_IN));
     }
 
@@ -82,12 +87,17 @@ public class GameController extends GameObject {
         switchArea(player_spawn_level, player_spawn);
     }
 
-    private static void _loadArea(String level_file_name, int spawn_id, Transition.Type transition_type) {
+    /**
+     * Replaces the current area with {@code level}, which has been parsing in the background during the outgoing
+     * transition.
+     */
+    private static void _loadArea(String level_file_name, Future<LevelParser.Level> level, int spawn_id,
+                                  Transition.Type transition_type) {
         current_level = level_file_name;
         spawn_points = new HashMap<>();
         Game.clearNonPersistentObjects();
         spawning_player_at = spawn_id;
-        WorldLoader.loadFromFile(Mario.level_path, level_file_name);
+        WorldLoader.activate(level);
         spawning_player_at = -1;
         Transition.EventPointer animation_finish_action = () -> Game.setSuspendTier(0);
         new Transition(1, transition_type, animation_finish_action);
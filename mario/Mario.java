@@ -3,6 +3,10 @@ package mario;
 import engine.*;
 import engine.graphics.GameGraphics;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
 /**
  * Main game class that runs the program.
  *
@@ -51,14 +55,48 @@ public class Mario {
         return scaling_ratio;
     }
 
+    /**
+     * @param args Pass {@code --headless <steps>} to run {@code steps} steps without a window as fast as possible, then
+     *             exit. Pass {@code --record <file>} to save the session's input to {@code file}, or {@code --replay
+     *             <file>} to play back a saved session without a window as fast as possible, then exit.
+     */
     public static void main(String[] args) {
+        String mode = args.length >= 2 ? args[0] : "";
+        boolean headless = mode.equals("--headless") || mode.equals("--replay");
+
         // Engine init
         Game.setTargetFPS(fps);
-        Game.setUseFrameTime(true);
-        GameGraphics.initWindow("Mario", 24*getGridScale(), 14*getGridScale(), window_scale);
+        Game.setUseFixedTimestep(true);
+        if(headless) {
+            GameGraphics.initHeadless(24*getGridScale(), 14*getGridScale());
+        }
+        else {
+            GameGraphics.initWindow("Mario", 24*getGridScale(), 14*getGridScale(), window_scale);
+        }
+
+        // Draw at least as often as the screen refreshes, and more often than the game steps; objects that move are
+        // drawn between steps at interpolated positions
+        Game.setMaxRenderFPS(Math.max(GameGraphics.getRefreshRate(), 2*fps));
         GameGraphics.setDrawScale(scaling_ratio);
+        GameGraphics.setThreadedRendering(true);
+        // Objects created or deleted in a parallel batch are queued in thread order, so sessions being recorded or
+        // replayed are updated on one thread to play out the same way every time
+        Game.setParallelUpdates(!mode.equals("--record") && !mode.equals("--replay"));
         World.grid_scaling_factor = scaling_ratio;
+        LevelStreamer.setRegionSize(16);
         InputManager.init();
+        try {
+            if(mode.equals("--record")) {
+                InputManager.startRecording(new FileOutputStream(args[1]));
+            }
+            else if(mode.equals("--replay") && !InputManager.startReplay(new FileInputStream(args[1]), true)) {
+                return;
+            }
+        }
+        catch(FileNotFoundException e) {
+            e.printStackTrace();
+            return;
+        }
 
         // Game init
         new GameController();
@@ -66,9 +104,18 @@ public class Mario {
         GameController.switchLevel("test.json");
 
         // Run game
-        Game.run();
+        if(headless) {
+            long start_time = System.nanoTime();
+            long steps = mode.equals("--replay") ? Long.MAX_VALUE : Long.parseLong(args[1]);
+            Game.runSteps(steps);
+            System.out.printf("Ran %d steps in %.3f s%n", Game.getStepCount(), (System.nanoTime() - start_time)/1e9);
+        }
+        else {
+            Game.run();
+        }
 
         // End game
+        InputManager.stopRecording();
         GameGraphics.closeWindow();
     }
 }
@@ -7,6 +7,7 @@ import engine.collider.Collider;
 import engine.collider.Collision;
 import engine.objects.PhysicsObject;
 import engine.util.Vector2;
+import engine.util.Vector2Pool;
 import mario.objects.Ground;
 import mario.objects.Types;
 
@@ -17,7 +18,7 @@ import java.util.HashMap;
  * Base class for objects that use platforming physics.
  *
  * @author Galen Savidge
- * @version 6/4/2020
+ * @version 6/12/2020
  */
 public abstract class PlatformingObject extends PhysicsObject {
 
@@ -287,8 +288,9 @@ public abstract class PlatformingObject extends PhysicsObject {
     protected Vector2 applyFriction(Vector2 v_parallel_to_ground, double friction_acceleration) {
         if(friction_acceleration == 0) return v_parallel_to_ground;
         double friction_delta = friction_acceleration*Game.stepTimeSeconds();
-        if(v_parallel_to_ground.abs() > friction_delta) {
-            return v_parallel_to_ground.multiply(1.0 - friction_delta/v_parallel_to_ground.abs());
+        double speed = v_parallel_to_ground.abs();
+        if(speed > friction_delta) {
+            return v_parallel_to_ground.multiply(1.0 - friction_delta/speed);
         }
         else {
             return Vector2.zero();
@@ -303,9 +305,12 @@ public abstract class PlatformingObject extends PhysicsObject {
      * @return A new velocity vector.
      */
     protected Vector2 inelasticCollision(Vector2 v, Intersection i) {
-        Vector2 v_parallel_to_collision = v.normalComponent(i.getNormal());
-        Vector2 object_v_normal_to_collision = i.collided_with.velocity.projection(i.getNormal());
-        return v_parallel_to_collision.sum(object_v_normal_to_collision);
+        int mark = Vector2Pool.mark();
+        Vector2 object_v_normal_to_collision = i.collided_with.velocity.projection(i.getNormal(),
+                Vector2Pool.obtain());
+        Vector2 new_v = v.normalComponent(i.getNormal()).addInPlace(object_v_normal_to_collision);
+        Vector2Pool.release(mark);
+        return new_v;
     }
 
     protected boolean slideAroundCorners(Intersection i, double max_distance) {
@@ -352,7 +357,8 @@ public abstract class PlatformingObject extends PhysicsObject {
      * Draws a sprite at the object's current position. Flips the sprite horizontally if the object is facing right.
      */
     protected void drawSprite(Image image) {
-        GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, false,
+        Vector2 draw_position = interpolatedPixelPosition();
+        GameGraphics.drawImage((int)draw_position.x, (int)draw_position.y, false, false,
                 direction_facing == Direction.RIGHT, 0, 0, image);
     }
 
@@ -11,7 +11,7 @@ import java.util.HashMap;
  * A class that saves a parameter set from {@link LevelParser} and spawns instances under configurable conditions.
  *
  * @author Galen Savidge
- * @version 5/17/2020
+ * @version 6/12/2020
  */
 public class Spawner extends PhysicsObject {
 
@@ -93,6 +93,27 @@ public class Spawner extends PhysicsObject {
         }
     }
 
+    /**
+     * Keeps this spawner loaded by {@link engine.LevelStreamer} while its instance is near the camera, wherever the
+     * spawner itself is.
+     */
+    @Override
+    public boolean isNearCamera(double margin) {
+        return super.isNearCamera(margin) || (instance != null && !instance.isDeleted()
+                && instance.isNearCamera(margin));
+    }
+
+    /**
+     * Deletes the spawned instance along with this spawner, e.g. when {@link engine.LevelStreamer} unloads it.
+     */
+    @Override
+    public void deleteEvent() {
+        super.deleteEvent();
+        if(instance != null && !instance.isDeleted()) {
+            instance.delete();
+        }
+    }
+
     protected boolean checkSpawnCondition() {
         boolean result = false;
         boolean in_spawn_distance_not_onscreen =
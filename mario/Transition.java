@@ -6,12 +6,16 @@ import engine.objects.GameObject;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * Plays a transition effect and calls a passed lambda function when transition is complete.
  *
  * @author Galen Savidge
- * @version 5/18/2020
+ * @version 6/12/2020
  */
 
 public class Transition extends GameObject {
@@ -115,17 +119,69 @@ public class Transition extends GameObject {
         return sum/pixels.length;
     }
 
+    /**
+     * Replaces each {@code pixel_size} square of the frame buffer with the color of the pixel near its center.
+     */
     private static void drawPixelGrid(int pixel_size) {
-        BufferedImage buffer = GameGraphics.getBuffer();
-        int y;
-        for(y = 0;y < buffer.getHeight();y += pixel_size) {
-            int x;
-            Color c;
-            for(x = 0;x < buffer.getWidth();x += pixel_size) {
-                int x_pixel = Math.min(x + pixel_size/2, (x + buffer.getWidth())/2 - 1);
-                int y_pixel = Math.min(y + pixel_size/2, (y + buffer.getHeight())/2 - 1);
-                c = new Color(buffer.getRGB(x_pixel, y_pixel));
-                GameGraphics.drawRectangle(x, y, pixel_size, pixel_size, true, c);
+        if(pixel_size <= 1) {
+            return;
+        }
+        GameGraphics.drawOperation((graphics, buffer) -> {
+            WritableRaster raster = buffer.getRaster();
+            if(raster.getDataBuffer() instanceof DataBufferInt
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                    && raster.getParent() == null) {
+                pixelateRaster(buffer, pixel_size);
+            }
+            else {
+                pixelateGraphics(graphics, buffer, pixel_size);
+            }
+        });
+    }
+
+    /**
+     * @return The column or row of the pixel sampled for the square starting at {@code start}.
+     */
+    private static int samplePosition(int start, int pixel_size, int length) {
+        return Math.max(0, Math.min(start + pixel_size/2, (start + length)/2 - 1));
+    }
+
+    /**
+     * Pixelates {@code buffer} by writing to its backing array directly. Fills the first row of each band of squares,
+     * then copies that row down the rest of the band.
+     */
+    private static void pixelateRaster(BufferedImage buffer, int pixel_size) {
+        WritableRaster raster = buffer.getRaster();
+        int[] pixels = ((DataBufferInt)raster.getDataBuffer()).getData();
+        int stride = ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+        int width = buffer.getWidth(), height = buffer.getHeight();
+
+        for(int y = 0;y < height;y += pixel_size) {
+            int row = y*stride;
+            int sample_row = samplePosition(y, pixel_size, height)*stride;
+            for(int x = 0;x < width;x += pixel_size) {
+                int sample_x = samplePosition(x, pixel_size, width);
+
+                // A sample left of the square is in a square already filled, which so far only has its first row
+                int color = pixels[(sample_x < x ? Math.min(row, sample_row) : sample_row) + sample_x];
+                Arrays.fill(pixels, row + x, row + Math.min(x + pixel_size, width), color);
+            }
+            for(int r = 1;r < pixel_size && y + r < height;r++) {
+                System.arraycopy(pixels, row, pixels, row + r*stride, width);
+            }
+        }
+    }
+
+    /**
+     * Pixelates {@code buffer} one square at a time through {@code graphics}, for buffers not backed by an int array.
+     */
+    private static void pixelateGraphics(Graphics2D graphics, BufferedImage buffer, int pixel_size) {
+        for(int y = 0;y < buffer.getHeight();y += pixel_size) {
+            int y_pixel = samplePosition(y, pixel_size, buffer.getHeight());
+            for(int x = 0;x < buffer.getWidth();x += pixel_size) {
+                int x_pixel = samplePosition(x, pixel_size, buffer.getWidth());
+                graphics.setColor(new Color(buffer.getRGB(x_pixel, y_pixel)));
+                graphics.fillRect(x, y, pixel_size, pixel_size);
             }
         }
     }
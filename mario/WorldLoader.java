@@ -1,16 +1,18 @@
 package mario;
 
 import engine.LevelParser;
+import engine.LevelStreamer;
 import mario.enemies.Galoomba;
 import mario.objects.*;
 
 import java.util.HashMap;
+import java.util.concurrent.Future;
 
 /**
  * This class loads JSON files using {@link engine.LevelParser}.
  *
  * @author Galen Savidge
- * @version 6/8/2020
+ * @version 6/12/2020
  */
 public class WorldLoader {
 
@@ -24,6 +26,26 @@ public class WorldLoader {
         LevelParser.loadFromJson(directory, file_name, type_table);
     }
 
+    /**
+     * Starts parsing a level in the background. See {@link LevelParser#loadAsync}.
+     */
+    public static Future<LevelParser.Level> loadInBackground(String directory, String file_name) {
+        return LevelParser.loadAsync(directory, file_name);
+    }
+
+    /**
+     * Waits for a level started by {@link #loadInBackground} to finish parsing, then creates its objects.
+     */
+    public static void activate(Future<LevelParser.Level> level) {
+        if(type_table == null) {
+            buildTypeTable();
+        }
+        LevelParser.Level loaded = LevelParser.await(level);
+        if(loaded != null) {
+            loaded.activate(type_table);
+        }
+    }
+
     static private void buildTypeTable() {
         type_table = new HashMap<>();
         type_table.put(GameController.spawn_point_type_name.toLowerCase(), GameController::createSpawn);
@@ -33,5 +55,8 @@ public class WorldLoader {
         type_table.put(MovingPlatform.type_name.toLowerCase(), Spawner::new);
         type_table.put(Coin.type_name.toLowerCase(), Coin::new);
         type_table.put(Galoomba.type_name.toLowerCase(), Spawner::new);
+
+        // The player respawns at spawn points anywhere in the level
+        LevelStreamer.keepLoaded(GameController.spawn_point_type_name.toLowerCase());
     }
 }
@@ -34,6 +34,11 @@ public class Enemy extends PlatformingObject {
         this.type_group = Types.enemy_type_group;
     }
 
+    @Override
+    public boolean canUpdateInParallel() {
+        return true;
+    }
+
     /**
      * Called when the player collides with this object.
      *
@@ -14,7 +14,7 @@ import java.util.HashMap;
  * A Galoomba, the Goomba equivalent from SMW.
  *
  * @author Galen Savidge
- * @version 6/6/2020
+ * @version 6/12/2020
  */
 public class Galoomba extends Enemy {
 
@@ -62,6 +62,7 @@ public class Galoomba extends Enemy {
                 new Vector2(15*px - es, 5*px), new Vector2(15*px - es, 16*px - es),
                 new Vector2(px + es, 16*px - es), new Vector2(px + es, 5*px)};
         this.collider = new Collider(this, vertices);
+        setDrawBounds(0, 0, Mario.getGridScale(), Mario.getGridScale());
 
         Player player = GameController.getPlayer();
         if(player != null) {
@@ -239,7 +240,8 @@ public class Galoomba extends Enemy {
 
         @Override
         public void draw() {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, false,
+            Vector2 draw_position = interpolatedPixelPosition();
+            GameGraphics.drawImage((int)draw_position.x, (int)draw_position.y, false, false,
                     direction_facing == Direction.RIGHT, Math.PI, 0, walk_sprite.getCurrentFrame());
         }
     }
@@ -301,7 +303,7 @@ public class Galoomba extends Enemy {
                 // Set global velocity
                 velocity = local_velocity.sum(ground_found.velocity);
 
-                if(local_velocity.equals(Vector2.zero())) {
+                if(local_velocity.isZero()) {
                     setNextState(new StunState());
                 }
             }
@@ -325,7 +327,8 @@ public class Galoomba extends Enemy {
 
         @Override
         public void draw() {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, false,
+            Vector2 draw_position = interpolatedPixelPosition();
+            GameGraphics.drawImage((int)draw_position.x, (int)draw_position.y, false, false,
                     direction_facing == Direction.RIGHT, Math.PI, 0, walk_sprite.getCurrentFrame());
         }
     }
@@ -338,7 +341,8 @@ public class Galoomba extends Enemy {
 
         @Override
         public void draw() {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, false,
+            Vector2 draw_position = interpolatedPixelPosition();
+            GameGraphics.drawImage((int)draw_position.x, (int)draw_position.y, false, false,
                     direction_facing == Direction.RIGHT, rotation, 0, walk_sprite.getCurrentFrame());
         }
     }
@@ -28,5 +28,11 @@ public abstract class Block extends PhysicsObject {
         this.type_group = Types.block_type_group;
         this.collider = Collider.newBox(this, 0, 0, Mario.getGridScale(), Mario.getGridScale());
         this.solid = true;
+        setDrawBounds(0, 0, Mario.getGridScale(), Mario.getGridScale());
+    }
+
+    @Override
+    public boolean isStaticGeometry() {
+        return true;
     }
 }
\ No newline at end of file
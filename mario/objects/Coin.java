@@ -37,6 +37,7 @@ public class Coin extends Pickup {
         this.type = Coin.type_name;
         collider = Collider.newPolygon(this, 8, Mario.getPixelSize()*4,
                 Mario.getPixelSize()*4, Mario.getPixelSize()*4, 0);
+        setDrawBounds(0, 0, Mario.getGridScale(), Mario.getGridScale());
     }
 
     @Override
@@ -47,8 +48,6 @@ public class Coin extends Pickup {
 
     @Override
     public void draw() {
-        if(isOnScreen(Mario.getGridScale(), Mario.getGridScale(), 0)) {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite.getCurrentFrame());
-        }
+        GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite.getCurrentFrame());
     }
 }
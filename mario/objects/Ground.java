@@ -28,12 +28,20 @@ public class Ground extends PhysicsObject {
         this.type_group = Types.block_type_group;
         this.tags.add(Types.ground_tag);
         this.visible = true;
+        if(collider != null) {
+            setDrawBoundsToCollider();
+        }
     }
 
     public Vector2 getSurfaceVelocity() {
         return velocity.copy();
     }
 
+    @Override
+    public boolean isStaticGeometry() {
+        return true;
+    }
+
     @Override
     public void draw() {
         collider.draw_self = true;
@@ -28,8 +28,6 @@ public class HardBlock extends Block {
     }
 
     public void draw() {
-        if(isOnScreen(Mario.getGridScale(), Mario.getGridScale(), 0)) {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite);
-        }
+        GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite);
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import engine.collider.Intersection;
 import engine.graphics.GameGraphics;
 import engine.collider.Collider;
 import engine.objects.PhysicsObject;
+import engine.util.Vector2;
 import mario.Mario;
 
 import java.awt.*;
@@ -12,7 +13,7 @@ import java.util.HashMap;
 
 /**
  * @author Galen Savidge
- * @version 5/14/2020
+ * @version 6/12/2020
  */
 public class MovingPlatform extends PhysicsObject {
     public static final String type_name = "MovingPlatform";
@@ -74,6 +75,7 @@ public class MovingPlatform extends PhysicsObject {
             this.velocity.x = speed;
         }
         collider = Collider.newBox(this, 0, 0, size*Mario.getGridScale(), Mario.getGridScale()*11.0/16.0);
+        setDrawBounds(0, 0, size*Mario.getGridScale(), Mario.getGridScale());
     }
 
     @Override
@@ -103,14 +105,20 @@ public class MovingPlatform extends PhysicsObject {
         return false;
     }
 
+    @Override
+    public boolean canUpdateInParallel() {
+        return true;
+    }
+
     @Override
     public void draw() {
-        GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, left_sprite);
-        GameGraphics.drawImage((int)(pixelPosition().x + (size - 1)*Mario.getGridScale()), (int)pixelPosition().y,
+        Vector2 draw_position = interpolatedPixelPosition();
+        GameGraphics.drawImage((int)draw_position.x, (int)draw_position.y, false, left_sprite);
+        GameGraphics.drawImage((int)(draw_position.x + (size - 1)*Mario.getGridScale()), (int)draw_position.y,
                 false, right_sprite);
 
         for(int i = 1;i < size - 1;i++) {
-            GameGraphics.drawImage((int)(pixelPosition().x + i*Mario.getGridScale()), (int)pixelPosition().y,
+            GameGraphics.drawImage((int)(draw_position.x + i*Mario.getGridScale()), (int)draw_position.y,
                     false, center_sprite);
         }
     }
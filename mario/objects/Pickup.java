@@ -22,5 +22,10 @@ public abstract class Pickup extends PhysicsObject {
         this.type_group = Types.pickup_type_group;
     }
 
+    @Override
+    public boolean canUpdateInParallel() {
+        return true;
+    }
+
     public abstract void collect();
 }
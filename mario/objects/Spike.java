@@ -34,8 +34,6 @@ public class Spike extends Block {
 
     @Override
     public void draw() {
-        if(isOnScreen(Mario.getGridScale(), Mario.getGridScale(), 0)) {
-            GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite.getCurrentFrame());
-        }
+        GameGraphics.drawImage((int)pixelPosition().x, (int)pixelPosition().y, false, sprite.getCurrentFrame());
     }
 }